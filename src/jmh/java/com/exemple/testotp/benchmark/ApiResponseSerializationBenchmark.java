@@ -0,0 +1,44 @@
+package com.exemple.testotp.benchmark;
+
+import com.exemple.testotp.dto.ApiResponse;
+import com.exemple.testotp.dto.RegistrationResponseDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiResponseSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ApiResponse<RegistrationResponseDto> response;
+
+    @Setup
+    public void setup() {
+        // Même construction que l'ObjectMapper auto-configuré par Spring Boot
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        response = ApiResponse.success("Processus d'inscription démarré",
+                new RegistrationResponseDto("3f1c2b9e-8d4a-4c1e-9a57-0e6f1d2c3b4a", "Code OTP envoyé par SMS", "VERIFY_OTP"));
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
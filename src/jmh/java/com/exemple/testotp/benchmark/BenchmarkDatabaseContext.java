@@ -0,0 +1,63 @@
+package com.exemple.testotp.benchmark;
+
+import com.exemple.testotp.config.FlywayConfig;
+import com.exemple.testotp.config.MessagingConfig;
+import com.exemple.testotp.entity.OtpCode;
+import com.exemple.testotp.repository.OtpCodeRepository;
+import com.exemple.testotp.service.DatabaseOtpStore;
+import com.exemple.testotp.service.MessageChannelRouter;
+import com.exemple.testotp.service.OtpCodeCipher;
+import com.exemple.testotp.service.OtpCodeHasher;
+import com.exemple.testotp.service.OtpCodePool;
+import com.exemple.testotp.service.OtpService;
+import com.exemple.testotp.service.OutboxService;
+import com.exemple.testotp.service.RegistrationMetrics;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Contexte Spring réduit aux services OTP, branché sur un PostgreSQL embarqué migré par Flyway.
+ * Les requêtes des repositories étant spécifiques à PostgreSQL (SKIP LOCKED, index partiels),
+ * une base embarquée de type H2 ne mesurerait pas le même plan d'exécution.
+ */
+@Configuration
+@EnableAutoConfiguration
+@EntityScan(basePackageClasses = OtpCode.class)
+@EnableJpaRepositories(basePackageClasses = OtpCodeRepository.class)
+@Import({FlywayConfig.class, DatabaseOtpStore.class, OtpCodeHasher.class, OtpCodeCipher.class, OtpCodePool.class,
+        OtpService.class, OutboxService.class, RegistrationMetrics.class, MessagingConfig.class, MessageChannelRouter.class})
+public class BenchmarkDatabaseContext {
+
+    public static ConfigurableApplicationContext start(EmbeddedPostgres postgres, Map<String, Object> extraProperties)
+            throws IOException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", postgres.getJdbcUrl("postgres", "postgres"));
+        properties.put("spring.datasource.username", "postgres");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.putAll(extraProperties);
+
+        // Passées en arguments pour primer sur application.properties
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+
+        return new SpringApplicationBuilder(BenchmarkDatabaseContext.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run(args);
+    }
+}
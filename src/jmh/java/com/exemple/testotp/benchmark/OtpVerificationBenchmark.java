@@ -0,0 +1,133 @@
+package com.exemple.testotp.benchmark;
+
+import com.exemple.testotp.entity.OtpCode;
+import com.exemple.testotp.exception.InvalidOtpException;
+import com.exemple.testotp.repository.OtpCodeRepository;
+import com.exemple.testotp.service.OtpCodeHasher;
+import com.exemple.testotp.service.OtpService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chemin {@link OtpService#verifyOtp} de bout en bout contre la base : code correct (consommation)
+ * et code incorrect (lecture seule).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class OtpVerificationBenchmark {
+
+    private static final String CODE = "123456";
+    private static final String WRONG_CODE = "654321";
+
+    @State(Scope.Benchmark)
+    public static class Database {
+        EmbeddedPostgres postgres;
+        ConfigurableApplicationContext context;
+        OtpService otpService;
+        OtpCodeRepository otpCodeRepository;
+        OtpCodeHasher otpCodeHasher;
+        final AtomicInteger phoneSequence = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            postgres = EmbeddedPostgres.builder().start();
+            context = BenchmarkDatabaseContext.start(postgres, Map.of());
+            otpService = context.getBean(OtpService.class);
+            otpCodeRepository = context.getBean(OtpCodeRepository.class);
+            otpCodeHasher = context.getBean(OtpCodeHasher.class);
+        }
+
+        String nextPhoneNumber() {
+            return "+3360000" + String.format("%04d", phoneSequence.incrementAndGet());
+        }
+
+        void insertOtp(String phoneNumber) {
+            OtpCode otp = new OtpCode();
+            otp.setPhoneNumber(phoneNumber);
+            otp.setCodeHash(otpCodeHasher.hash(phoneNumber, CODE));
+            otp.setExpiresAt(LocalDateTime.now().plusMinutes(50));
+            otp.setUsed(false);
+            otp.setWhatsappSentAt(LocalDateTime.now());
+            otpCodeRepository.save(otp);
+        }
+
+        @TearDown(Level.Iteration)
+        public void purge() {
+            otpCodeRepository.deleteAllInBatch();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws Exception {
+            context.close();
+            postgres.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PendingOtp {
+        String phoneNumber;
+
+        @Setup(Level.Trial)
+        public void assignPhone(Database database) {
+            phoneNumber = database.nextPhoneNumber();
+        }
+
+        // Un OTP neuf par invocation : le chemin mesuré le consomme
+        @Setup(Level.Invocation)
+        public void insertOtp(Database database) {
+            database.insertOtp(phoneNumber);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WrongGuess {
+        String phoneNumber;
+
+        @Setup(Level.Trial)
+        public void assignPhone(Database database) {
+            phoneNumber = database.nextPhoneNumber();
+        }
+
+        // Les OTP sont purgés après chaque itération
+        @Setup(Level.Iteration)
+        public void insertOtp(Database database) {
+            database.insertOtp(phoneNumber);
+        }
+    }
+
+    @Benchmark
+    public boolean verifyCorrectCode(Database database, PendingOtp otp) {
+        return database.otpService.verifyOtp(otp.phoneNumber, CODE);
+    }
+
+    @Benchmark
+    public boolean verifyIncorrectCode(Database database, WrongGuess otp) {
+        try {
+            return database.otpService.verifyOtp(otp.phoneNumber, WRONG_CODE);
+        } catch (InvalidOtpException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.exemple.testotp.benchmark;
+
+import com.exemple.testotp.config.SecurityConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hachage BCrypt du mot de passe, tel que configuré pour UserRegistrationService.completeRegistration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PasswordEncodingBenchmark {
+
+    private PasswordEncoder passwordEncoder;
+
+    @Setup
+    public void setup() {
+        passwordEncoder = new SecurityConfig().passwordEncoder();
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordEncoder.encode("MotDePasse!2024");
+    }
+}
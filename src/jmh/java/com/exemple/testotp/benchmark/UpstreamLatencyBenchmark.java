@@ -0,0 +1,122 @@
+package com.exemple.testotp.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durée d'un lot de requêtes dont chacune bloque sur deux appels amont (Twilio puis Keycloak) de
+ * {@code latencyMs}, exécutées soit sur un pool de threads plateforme dimensionné comme Tomcat (200),
+ * soit sur un thread virtuel par requête ({@code spring.threads.virtual.enabled=true}).
+ * <p>
+ * {@code transport=sleep} injecte la latence dans le thread appelant et isole le modèle d'exécution ;
+ * {@code transport=http} passe par un serveur HTTP local, plus réaliste mais limité par le CPU
+ * disponible pour le serveur de test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UpstreamLatencyBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"50", "200"})
+    public int latencyMs;
+
+    @Param({"1000"})
+    public int requests;
+
+    @Param({"sleep", "http"})
+    public String transport;
+
+    private HttpServer upstream;
+    private HttpRequest upstreamRequest;
+    private HttpClient httpClient;
+    private ExecutorService requestExecutor;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        upstream.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        upstream.createContext("/", exchange -> {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"sid\":\"SM0\"}".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        upstream.start();
+        upstreamRequest = HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + upstream.getAddress().getPort() + "/")).build();
+        httpClient = HttpClient.newHttpClient();
+
+        requestExecutor = "virtual".equals(mode)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requestExecutor.shutdownNow();
+        httpClient.close();
+        upstream.stop(0);
+    }
+
+    @Benchmark
+    public int registrationBurst() throws Exception {
+        List<Future<Integer>> responses = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            responses.add(requestExecutor.submit(() -> call() + call()));
+        }
+        int total = 0;
+        for (Future<Integer> response : responses) {
+            total += response.get();
+        }
+        return total;
+    }
+
+    // Appel bloquant, comme les clients Twilio et Keycloak
+    private int call() throws IOException, InterruptedException {
+        if ("sleep".equals(transport)) {
+            Thread.sleep(latencyMs);
+            return 1;
+        }
+        return httpClient.send(upstreamRequest, HttpResponse.BodyHandlers.ofByteArray()).body().length;
+    }
+}
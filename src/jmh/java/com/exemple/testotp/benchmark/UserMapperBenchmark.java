@@ -0,0 +1,51 @@
+package com.exemple.testotp.benchmark;
+
+import com.exemple.testotp.dto.UserRegistrationDto;
+import com.exemple.testotp.entity.User;
+import com.exemple.testotp.mapper.UserMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserMapperBenchmark {
+
+    private UserMapper userMapper;
+    private UserRegistrationDto dto;
+    private User user;
+
+    @Setup
+    public void setup() {
+        userMapper = new UserMapper();
+        ReflectionTestUtils.setField(userMapper, "modelMapper", new ModelMapper());
+
+        dto = new UserRegistrationDto("Jean", "Dupont", "jean.dupont@example.com", "+33612345678");
+        user = userMapper.toEntity(dto);
+    }
+
+    @Benchmark
+    public User toEntity() {
+        return userMapper.toEntity(dto);
+    }
+
+    @Benchmark
+    public UserRegistrationDto toDto() {
+        return userMapper.toDto(user);
+    }
+}
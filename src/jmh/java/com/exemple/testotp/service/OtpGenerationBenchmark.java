@@ -0,0 +1,68 @@
+package com.exemple.testotp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Génération des codes OTP, avec un seul thread puis sous contention : génération directe sur les
+ * générateurs répartis, et retrait dans la réserve complétée en continu par un thread de remplissage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OtpGenerationBenchmark {
+
+    private OtpCodePool otpCodePool;
+    private Thread refiller;
+
+    @Setup
+    public void setup() {
+        otpCodePool = new OtpCodePool(new SimpleMeterRegistry(), 6, true, 1024);
+        refiller = Thread.ofPlatform().daemon().start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                otpCodePool.refill();
+                Thread.onSpinWait();
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        refiller.interrupt();
+        refiller.join();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String generateSingleThread() {
+        return otpCodePool.generate();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String generateContended() {
+        return otpCodePool.generate();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String poolContended() {
+        return otpCodePool.nextCode();
+    }
+}
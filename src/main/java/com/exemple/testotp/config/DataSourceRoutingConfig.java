@@ -0,0 +1,81 @@
+package com.exemple.testotp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Routage lecture / écriture : les transactions {@code @Transactional(readOnly = true)} sont servies
+ * par les réplicas {@code datasource.replicas.urls}, tout le reste par {@code spring.datasource.url}.
+ * <p>
+ * La connexion n'est obtenue qu'à la première requête SQL ({@link LazyConnectionDataSourceProxy}),
+ * une fois le caractère lecture seule de la transaction connu. Une transaction lecture seule appelée
+ * depuis une transaction en écriture y participe et reste donc sur le primaire.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replicas.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    @Value("${datasource.replicas.urls}")
+    private String replicaUrls;
+
+    @Value("${datasource.replicas.username:${spring.datasource.username}}")
+    private String replicaUsername;
+
+    @Value("${datasource.replicas.password:${spring.datasource.password}}")
+    private String replicaPassword;
+
+    @Value("${datasource.replicas.pool.size:10}")
+    private int replicaPoolSize;
+
+    @Value("${datasource.replicas.max-lag.ms:1000}")
+    private long maxLagMillis;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaDataSource(HikariDataSource primaryDataSource,
+                                                      DataSourceProperties properties,
+                                                      MeterRegistry meterRegistry) {
+        List<DataSource> replicas = new ArrayList<>();
+        List<String> urls = Arrays.stream(replicaUrls.split(",")).map(String::trim).filter(url -> !url.isEmpty()).toList();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(urls.get(i));
+            replica.setUsername(replicaUsername);
+            replica.setPassword(replicaPassword);
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setReadOnly(true);
+            // Un réplica arrêté ne doit pas bloquer le démarrage : il est écarté jusqu'au prochain contrôle réussi
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLagMillis, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaRoutingDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+}
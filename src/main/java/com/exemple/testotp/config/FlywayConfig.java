@@ -0,0 +1,23 @@
+package com.exemple.testotp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class FlywayConfig {
+
+    @Value("${db.partitioning.enabled:false}")
+    private boolean partitioningEnabled;
+
+    @Bean
+    public FlywayConfigurationCustomizer migrationLocationsCustomizer() {
+        // Les migrations communes s'appliquent aux deux variantes du schéma otp_codes / registration_sessions
+        String variant = partitioningEnabled ? "partitioned" : "standard";
+        return configuration -> configuration.locations(
+                "classpath:db/migration/common",
+                "classpath:db/migration/" + variant
+        );
+    }
+}
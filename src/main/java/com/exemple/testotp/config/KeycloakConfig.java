@@ -1,12 +1,18 @@
 package com.exemple.testotp.config;
 
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.keycloak.OAuth2Constants;
+import org.keycloak.admin.client.JacksonProvider;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class KeycloakConfig {
 
@@ -25,15 +31,59 @@ public class KeycloakConfig {
     @Value("${keycloak.admin.client-id}")
     private String clientId;
 
+    @Value("${keycloak.admin.grant-type:password}")
+    private String grantType;
+
+    @Value("${keycloak.admin.client-secret:}")
+    private String clientSecret;
+
+    @Value("${keycloak.admin.pool.size:20}")
+    private int poolSize;
+
+    @Value("${keycloak.admin.connect-timeout.ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${keycloak.admin.read-timeout.ms:5000}")
+    private long readTimeoutMs;
+
+    @Value("${keycloak.admin.pool.checkout-timeout.ms:1000}")
+    private long checkoutTimeoutMs;
+
+    @Value("${keycloak.admin.token.min-validity.seconds:30}")
+    private long tokenMinValiditySeconds;
+
     @Bean
     public Keycloak keycloak() {
-        return KeycloakBuilder.builder()
+        KeycloakBuilder builder = KeycloakBuilder.builder()
                 .serverUrl(serverUrl)
                 .realm(realm)
-                .grantType(OAuth2Constants.PASSWORD)
-                .username(username)
-                .password(password)
                 .clientId(clientId)
+                .resteasyClient(keycloakHttpClient());
+
+        if (OAuth2Constants.CLIENT_CREDENTIALS.equals(grantType)) {
+            builder.grantType(OAuth2Constants.CLIENT_CREDENTIALS)
+                    .clientSecret(clientSecret);
+        } else {
+            builder.grantType(OAuth2Constants.PASSWORD)
+                    .username(username)
+                    .password(password);
+        }
+
+        Keycloak keycloak = builder.build();
+        // Le jeton admin est mis en cache par le TokenManager et renouvelé avant son expiration
+        keycloak.tokenManager().setMinTokenValidity(tokenMinValiditySeconds);
+        return keycloak;
+    }
+
+    private Client keycloakHttpClient() {
+        // Client HTTP mutualisé : pool de connexions et délais explicites vers l'API admin
+        return ((ResteasyClientBuilder) ClientBuilder.newBuilder())
+                .connectionPoolSize(poolSize)
+                .maxPooledPerRoute(poolSize)
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .connectionCheckoutTimeout(checkoutTimeoutMs, TimeUnit.MILLISECONDS)
+                .register(JacksonProvider.class, 100)
                 .build();
     }
 }
@@ -0,0 +1,53 @@
+package com.exemple.testotp.config;
+
+import com.exemple.testotp.entity.OutboundMessage;
+import com.exemple.testotp.service.LogMessageChannel;
+import com.exemple.testotp.service.MessageChannel;
+import com.exemple.testotp.service.TwilioMessageChannel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+
+@Configuration
+public class MessagingConfig {
+
+    @Value("${twilio.phone.number}")
+    private String twilioPhoneNumber;
+
+    @Value("${twilio.whatsapp.sandbox.number}")
+    private String twilioWhatsappNumber;
+
+    @Value("${twilio.status-callback.url:}")
+    private String statusCallbackUrl;
+
+    @Bean
+    @ConditionalOnProperty(name = "messaging.provider", havingValue = "twilio", matchIfMissing = true)
+    public MessageChannel twilioWhatsappChannel(MeterRegistry meterRegistry) {
+        // Seule la remise WhatsApp est suivie : son échec déclenche l'envoi immédiat du SMS
+        URI statusCallback = statusCallbackUrl.isBlank() ? null : URI.create(statusCallbackUrl);
+        return new TwilioMessageChannel(OutboundMessage.Channel.WHATSAPP, "whatsapp:", twilioWhatsappNumber,
+                statusCallback, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "messaging.provider", havingValue = "twilio", matchIfMissing = true)
+    public MessageChannel twilioSmsChannel(MeterRegistry meterRegistry) {
+        return new TwilioMessageChannel(OutboundMessage.Channel.SMS, "", twilioPhoneNumber, null, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "messaging.provider", havingValue = "log")
+    public MessageChannel logWhatsappChannel() {
+        return new LogMessageChannel(OutboundMessage.Channel.WHATSAPP);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "messaging.provider", havingValue = "log")
+    public MessageChannel logSmsChannel() {
+        return new LogMessageChannel(OutboundMessage.Channel.SMS);
+    }
+}
@@ -0,0 +1,46 @@
+package com.exemple.testotp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class OutboxConfig {
+
+    @Value("${outbox.worker.threads:4}")
+    private int workerThreads;
+
+    @Value("${outbox.batch.size:50}")
+    private int batchSize;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Bean
+    public AsyncTaskExecutor outboxExecutor() {
+        if (virtualThreads) {
+            // Un thread virtuel par envoi ; la limite de concurrence borne la charge sur Twilio
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("outbox-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(workerThreads);
+            executor.setTaskTerminationTimeout(30000);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(batchSize);
+        executor.setThreadNamePrefix("outbox-");
+        // Si la file est pleine, le dispatcher envoie lui-même : pas de perte de message
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -0,0 +1,30 @@
+package com.exemple.testotp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class RegistrationConfig {
+
+    @Value("${registration.complete.async.threads:4}")
+    private int threads;
+
+    @Value("${registration.complete.async.queue-capacity:100}")
+    private int queueCapacity;
+
+    // Finalisations asynchrones : pool dimensionné indépendamment de Tomcat, file bornée (rejet au-delà)
+    @Bean
+    public AsyncTaskExecutor registrationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("registration-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -0,0 +1,45 @@
+package com.exemple.testotp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ReminderConfig {
+
+    @Value("${otp.reminder.parallelism:8}")
+    private int parallelism;
+
+    @Value("${otp.reminder.page.size:100}")
+    private int pageSize;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Bean
+    public AsyncTaskExecutor reminderExecutor() {
+        if (virtualThreads) {
+            // Un thread virtuel par envoi ; la limite de concurrence borne la charge sur Twilio
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("reminder-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(parallelism);
+            executor.setTaskTerminationTimeout(30000);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(pageSize);
+        executor.setThreadNamePrefix("reminder-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
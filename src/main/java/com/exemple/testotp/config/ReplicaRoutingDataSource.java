@@ -0,0 +1,134 @@
+package com.exemple.testotp.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Source des connexions en lecture seule : répartit les transactions {@code readOnly} entre les
+ * réplicas dont le retard de réplication est sous {@code maxLagMillis}, et retombe sur le primaire
+ * si aucun ne l'est (réplica injoignable, réception du WAL interrompue, retard, ou premier contrôle pas encore fait).
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final String PRIMARY = "primary";
+
+    // Un réplica à jour (tout le WAL reçu est rejoué) n'a pas de retard, même sans écriture récente ;
+    // sans récepteur WAL en streaming, il ne suit plus le primaire : NULL, le réplica est écarté.
+    // Le statut du récepteur n'est visible qu'avec le rôle pg_read_all_stats (ou pg_monitor)
+    private static final String LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+            "WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN NULL " +
+            "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+    private final List<DataSource> replicaDataSources;
+    private final List<JdbcTemplate> replicas;
+    private final long maxLagMillis;
+    private final AtomicLongArray lagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter replicaRoutes;
+    private final Counter primaryRoutes;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long maxLagMillis,
+                                    MeterRegistry meterRegistry) {
+        this.replicaDataSources = replicas;
+        this.replicas = replicas.stream().map(JdbcTemplate::new).toList();
+        this.maxLagMillis = maxLagMillis;
+        this.lagMillis = new AtomicLongArray(replicas.size());
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(replicaKey(i), replicas.get(i));
+            lagMillis.set(i, Long.MAX_VALUE);
+            int index = i;
+            Gauge.builder("datasource.replica.lag", lagMillis, lag -> lag.get(index) == Long.MAX_VALUE ? Double.NaN : lag.get(index))
+                    .description("Retard de réplication mesuré (NaN si injoignable ou déconnecté du primaire)")
+                    .tag("replica", replicaKey(i))
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        this.replicaRoutes = Counter.builder("datasource.routing")
+                .description("Connexions en lecture seule par destination")
+                .tag("target", "replica")
+                .register(meterRegistry);
+        this.primaryRoutes = Counter.builder("datasource.routing")
+                .description("Connexions en lecture seule par destination")
+                .tag("target", PRIMARY)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        refreshReplicationLag();
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replicas.lag-check.interval.ms:1000}")
+    public void refreshReplicationLag() {
+        for (int i = 0; i < replicas.size(); i++) {
+            long previous = lagMillis.get(i);
+            long lag;
+            try {
+                Double measured = replicas.get(i).queryForObject(LAG_QUERY, Double.class);
+                lag = measured == null ? Long.MAX_VALUE : Math.round(measured);
+            } catch (Exception e) {
+                lag = Long.MAX_VALUE;
+            }
+            lagMillis.set(i, lag);
+
+            boolean wasHealthy = previous <= maxLagMillis;
+            boolean healthy = lag <= maxLagMillis;
+            if (wasHealthy && !healthy) {
+                log.warn("Réplica {} écarté des lectures (retard: {})", replicaKey(i),
+                        lag == Long.MAX_VALUE ? "injoignable ou déconnecté du primaire" : lag + " ms");
+            } else if (!wasHealthy && healthy) {
+                log.info("Réplica {} utilisé pour les lectures (retard: {} ms)", replicaKey(i), lag);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource replica : replicaDataSources) {
+            if (replica instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        // Tourniquet à partir du réplica suivant, en sautant ceux qui sont en retard
+        int size = replicas.size();
+        int start = size == 0 ? 0 : Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (lagMillis.get(index) <= maxLagMillis) {
+                replicaRoutes.increment();
+                return replicaKey(index);
+            }
+        }
+        primaryRoutes.increment();
+        return PRIMARY;
+    }
+
+    private static String replicaKey(int index) {
+        return "replica-" + index;
+    }
+}
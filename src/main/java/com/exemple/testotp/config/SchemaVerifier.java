@@ -0,0 +1,101 @@
+package com.exemple.testotp.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vérifie au démarrage que les index attendus par les requêtes des repositories existent avec la bonne
+ * définition : colonnes de clé dans l'ordre, colonnes incluses et caractère partiel.
+ * Les tables et colonnes sont déjà contrôlées par {@code ddl-auto=validate} et l'historique
+ * Flyway par {@code validate-on-migrate} : toute dérive empêche l'application de démarrer.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SchemaVerifier implements SmartInitializingSingleton {
+
+    private record IndexDefinition(String keyColumns, String includedColumns, boolean partial) {
+        @Override
+        public String toString() {
+            return "(" + keyColumns + ")"
+                    + (includedColumns.isEmpty() ? "" : " INCLUDE (" + includedColumns + ")")
+                    + (partial ? " WHERE ..." : "");
+        }
+    }
+
+    private static final Map<String, Map<String, IndexDefinition>> EXPECTED_INDEXES = Map.of(
+            "otp_codes", Map.of(
+                    "idx_otp_codes_phone_unused", new IndexDefinition("phone_number,expires_at", "", true),
+                    "idx_otp_codes_expires_at", new IndexDefinition("expires_at", "", false),
+                    // Rappels par pages (claimOtpsForWhatsappReminder) ; ceux d'un numéro passent par idx_otp_codes_phone_unused
+                    "idx_otp_codes_reminder_pending", new IndexDefinition("id", "whatsapp_sent_at,expires_at", true),
+                    "idx_otp_codes_whatsapp_message_sid", new IndexDefinition("whatsapp_message_sid", "", true)),
+            "registration_sessions", Map.of(
+                    "idx_registration_sessions_expires_at", new IndexDefinition("expires_at", "", false),
+                    "idx_registration_sessions_completed", new IndexDefinition("expires_at", "", true)),
+            "outbound_messages", Map.of(
+                    "idx_outbound_messages_claimable", new IndexDefinition("next_attempt_at", "", true),
+                    "idx_outbound_messages_finished", new IndexDefinition("created_at", "", true)),
+            "rate_limit_buckets", Map.of(
+                    "idx_rate_limit_buckets_tat", new IndexDefinition("tat", "", false)),
+            "registration_token_completions", Map.of(
+                    "idx_registration_token_completions_expires_at", new IndexDefinition("expires_at", "", false))
+    );
+
+    // Colonnes de clé puis colonnes incluses (INCLUDE), dans l'ordre de l'index
+    private static final String INDEX_QUERY = "SELECT i.relname AS name, " +
+            "array_to_string(ARRAY(SELECT a.attname FROM unnest(x.indkey::int2[]) WITH ORDINALITY AS k(attnum, ord) " +
+            "JOIN pg_attribute a ON a.attrelid = x.indrelid AND a.attnum = k.attnum " +
+            "WHERE k.ord <= x.indnkeyatts ORDER BY k.ord), ',') AS key_columns, " +
+            "array_to_string(ARRAY(SELECT a.attname FROM unnest(x.indkey::int2[]) WITH ORDINALITY AS k(attnum, ord) " +
+            "JOIN pg_attribute a ON a.attrelid = x.indrelid AND a.attnum = k.attnum " +
+            "WHERE k.ord > x.indnkeyatts ORDER BY k.ord), ',') AS included_columns, " +
+            "x.indpred IS NOT NULL AS partial " +
+            "FROM pg_index x " +
+            "JOIN pg_class i ON i.oid = x.indexrelid " +
+            "JOIN pg_class t ON t.oid = x.indrelid " +
+            "WHERE t.relnamespace = current_schema()::regnamespace AND t.relname = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${schema.verify.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+
+        List<String> mismatches = new ArrayList<>();
+        EXPECTED_INDEXES.forEach((table, indexes) -> {
+            Map<String, IndexDefinition> existing = new HashMap<>();
+            jdbcTemplate.query(INDEX_QUERY, rs -> {
+                existing.put(rs.getString("name"), new IndexDefinition(
+                        rs.getString("key_columns"), rs.getString("included_columns"), rs.getBoolean("partial")));
+            }, table);
+            indexes.forEach((index, expected) -> {
+                IndexDefinition actual = existing.get(index);
+                if (actual == null) {
+                    mismatches.add(table + "." + index + " absent");
+                } else if (!actual.equals(expected)) {
+                    mismatches.add(table + "." + index + " " + actual + " au lieu de " + expected);
+                }
+            });
+        });
+
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("Schéma de base non conforme, index manquants ou différents: " + mismatches);
+        }
+        log.info("Schéma de base vérifié ({} tables)", EXPECTED_INDEXES.size());
+    }
+}
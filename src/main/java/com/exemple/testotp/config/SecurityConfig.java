@@ -1,23 +1,65 @@
 package com.exemple.testotp.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    private static final String ACTUATOR_ROLE = "ACTUATOR";
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
     }
 
+    /**
+     * Compte de collecte des métriques (Prometheus) ; aucun compte si le mot de passe est vide.
+     */
+    @Bean
+    public UserDetailsService actuatorUsers(@Value("${actuator.scrape.username:prometheus}") String username,
+                                            @Value("${actuator.scrape.password:}") String password,
+                                            PasswordEncoder passwordEncoder) {
+        InMemoryUserDetailsManager users = new InMemoryUserDetailsManager();
+        if (!password.isBlank()) {
+            users.createUser(User.withUsername(username)
+                    .password(passwordEncoder.encode(password))
+                    .roles(ACTUATOR_ROLE)
+                    .build());
+        }
+        return users;
+    }
+
+    // health reste public (sondes) ; métriques et export Prometheus demandent le compte de collecte (HTTP Basic)
+    @Bean
+    @Order(1)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http) throws Exception {
+        http
+                .securityMatcher("/actuator/**")
+                .csrf().disable()
+                .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
+                .authorizeHttpRequests(authz -> authz
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                        .anyRequest().hasRole(ACTUATOR_ROLE)
+                )
+                .httpBasic();
+
+        return http.build();
+    }
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
@@ -26,9 +68,12 @@ public class SecurityConfig {
                 .and()
                 .authorizeHttpRequests(authz -> authz
                         .requestMatchers("/api/auth/**").permitAll()
+                        // Protégé par la clé d'API user.import.api-key (en-tête X-Api-Key)
+                        .requestMatchers("/api/admin/users/import").permitAll()
+                        // Protégé par la signature Twilio (en-tête X-Twilio-Signature)
+                        .requestMatchers("/api/twilio/status").permitAll()
                         .requestMatchers("/swagger-ui/**").permitAll()
                         .requestMatchers("/api-docs/**").permitAll()
-                        .requestMatchers("/actuator/**").permitAll()
                         .anyRequest().authenticated()
                 );
 
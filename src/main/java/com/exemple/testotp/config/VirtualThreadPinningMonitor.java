@@ -0,0 +1,76 @@
+package com.exemple.testotp.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Diagnostic des threads virtuels épinglés à leur thread porteur (bloc {@code synchronized} ou appel
+ * natif pendant une opération bloquante), via l'événement JFR {@code jdk.VirtualThreadPinned}.
+ * Chaque épinglage au-delà du seuil est journalisé avec sa pile et compté par bibliothèque
+ * ({@code jvm.threads.virtual.pinned}) : Twilio, Keycloak / RESTEasy, client HTTP, JDBC.
+ */
+@Component
+@ConditionalOnProperty(name = "virtual-threads.pinning.monitor.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    private static final List<String> LIBRARIES = List.of(
+            "com.twilio", "org.keycloak", "org.jboss.resteasy", "org.apache.http", "org.postgresql", "com.zaxxer");
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${virtual-threads.pinning.threshold.ms:20}")
+    private long thresholdMillis;
+
+    private RecordingStream recordingStream;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable("jdk.VirtualThreadPinned")
+                .withThreshold(Duration.ofMillis(thresholdMillis))
+                .withStackTrace();
+        recordingStream.onEvent("jdk.VirtualThreadPinned", this::report);
+        recordingStream.startAsync();
+        log.info("Surveillance des threads virtuels épinglés activée (seuil: {} ms)", thresholdMillis);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+
+    private void report(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+        String library = frames.stream()
+                .map(frame -> frame.getMethod().getType().getName())
+                .flatMap(type -> LIBRARIES.stream().filter(type::startsWith))
+                .findFirst()
+                .orElse("other");
+
+        meterRegistry.counter("jvm.threads.virtual.pinned", "library", library).increment();
+        log.warn("Thread virtuel épinglé pendant {} ms ({}):\n\t{}", event.getDuration().toMillis(), library,
+                frames.stream()
+                        .limit(15)
+                        .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                                + ":" + frame.getLineNumber())
+                        .collect(Collectors.joining("\n\t")));
+    }
+}
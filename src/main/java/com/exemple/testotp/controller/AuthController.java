@@ -9,6 +9,7 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,14 +31,16 @@ public class AuthController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "OTP envoyé avec succès"),
             @ApiResponse(responseCode = "409", description = "L'utilisateur existe déjà"),
-            @ApiResponse(responseCode = "400", description = "Données invalides")
+            @ApiResponse(responseCode = "400", description = "Données invalides"),
+            @ApiResponse(responseCode = "429", description = "Trop de demandes d'OTP")
     })
     public ResponseEntity<com.exemple.testotp.dto.ApiResponse<RegistrationResponseDto>> startRegistration(
-            @Valid @RequestBody UserRegistrationDto registrationDto) {
+            @Valid @RequestBody UserRegistrationDto registrationDto,
+            HttpServletRequest request) {
 
         log.info("Démarrage de l'inscription pour: {}", registrationDto.getEmail());
 
-        RegistrationResponseDto response = userRegistrationService.startRegistration(registrationDto);
+        RegistrationResponseDto response = userRegistrationService.startRegistration(registrationDto, request.getRemoteAddr());
 
         return ResponseEntity.ok(
                 com.exemple.testotp.dto.ApiResponse.success("Processus d'inscription démarré", response)
@@ -50,7 +53,9 @@ public class AuthController {
             @ApiResponse(responseCode = "200", description = "OTP vérifié avec succès"),
             @ApiResponse(responseCode = "400", description = "Code OTP invalide"),
             @ApiResponse(responseCode = "404", description = "Session non trouvée"),
-            @ApiResponse(responseCode = "410", description = "Session expirée")
+            @ApiResponse(responseCode = "409", description = "Numéro déjà vérifié"),
+            @ApiResponse(responseCode = "410", description = "Session expirée"),
+            @ApiResponse(responseCode = "429", description = "Trop de tentatives")
     })
     public ResponseEntity<com.exemple.testotp.dto.ApiResponse<RegistrationResponseDto>> verifyOtp(
             @Valid @RequestBody OtpVerificationDto otpDto) {
@@ -71,6 +76,7 @@ public class AuthController {
     @Operation(summary = "Terminer l'inscription", description = "Définit le mot de passe et termine l'inscription")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Compte créé avec succès"),
+            @ApiResponse(responseCode = "202", description = "Création du compte en cours (mode asynchrone)"),
             @ApiResponse(responseCode = "400", description = "Données invalides ou mots de passe différents"),
             @ApiResponse(responseCode = "404", description = "Session non trouvée"),
             @ApiResponse(responseCode = "500", description = "Erreur lors de la création du compte")
@@ -82,8 +88,31 @@ public class AuthController {
 
         RegistrationResponseDto response = userRegistrationService.completeRegistration(passwordDto);
 
+        // Mode asynchrone : la création se poursuit en arrière-plan
+        if ("PROCESSING".equals(response.getNextStep())) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(
+                    com.exemple.testotp.dto.ApiResponse.success("Création du compte en cours", response)
+            );
+        }
+
         return ResponseEntity.status(HttpStatus.CREATED).body(
                 com.exemple.testotp.dto.ApiResponse.success("Compte créé avec succès", response)
         );
     }
+
+    @GetMapping("/register/status/{sessionId}")
+    @Operation(summary = "État de l'inscription", description = "Indique l'étape en cours de l'inscription, notamment la finalisation asynchrone")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "État de l'inscription"),
+            @ApiResponse(responseCode = "404", description = "Session non trouvée")
+    })
+    public ResponseEntity<com.exemple.testotp.dto.ApiResponse<RegistrationResponseDto>> getRegistrationStatus(
+            @PathVariable String sessionId) {
+
+        RegistrationResponseDto response = userRegistrationService.getRegistrationStatus(sessionId);
+
+        return ResponseEntity.ok(
+                com.exemple.testotp.dto.ApiResponse.success("État de l'inscription", response)
+        );
+    }
 }
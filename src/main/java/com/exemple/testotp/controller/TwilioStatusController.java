@@ -0,0 +1,58 @@
+package com.exemple.testotp.controller;
+
+import com.exemple.testotp.exception.InvalidSignatureException;
+import com.exemple.testotp.service.DeliveryStatusService;
+import com.twilio.security.RequestValidator;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Callback de statut de remise appelé par Twilio ({@code twilio.status-callback.url}).
+ * La signature est calculée par Twilio sur cette URL publique et les paramètres du formulaire.
+ */
+@RestController
+@RequestMapping("/api/twilio")
+@Tag(name = "Twilio", description = "Callbacks de statut de remise des messages")
+public class TwilioStatusController {
+
+    private final DeliveryStatusService deliveryStatusService;
+    private final RequestValidator requestValidator;
+    private final String statusCallbackUrl;
+
+    public TwilioStatusController(DeliveryStatusService deliveryStatusService,
+                                  @Value("${twilio.auth.token}") String authToken,
+                                  @Value("${twilio.status-callback.url:}") String statusCallbackUrl) {
+        this.deliveryStatusService = deliveryStatusService;
+        this.requestValidator = new RequestValidator(authToken);
+        this.statusCallbackUrl = statusCallbackUrl;
+    }
+
+    @PostMapping(value = "/status", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    @Operation(summary = "Statut de remise d'un message", description = "Appelé par Twilio, signé (X-Twilio-Signature)")
+    public ResponseEntity<Void> messageStatus(@RequestHeader(value = "X-Twilio-Signature", required = false) String signature,
+                                              HttpServletRequest request) {
+        Map<String, String> params = new HashMap<>();
+        request.getParameterMap().forEach((name, values) -> params.put(name, values[0]));
+
+        if (statusCallbackUrl.isBlank()) {
+            throw new InvalidSignatureException("Callbacks de statut désactivés : aucune URL configurée");
+        }
+        if (signature == null || !requestValidator.validate(statusCallbackUrl, params, signature)) {
+            throw new InvalidSignatureException("Signature Twilio invalide");
+        }
+
+        deliveryStatusService.recordStatus(params.get("MessageSid"), params.get("MessageStatus"));
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,95 @@
+package com.exemple.testotp.controller;
+
+import com.exemple.testotp.dto.UserImportSummaryDto;
+import com.exemple.testotp.exception.InvalidApiKeyException;
+import com.exemple.testotp.service.UserImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+@RestController
+@RequestMapping("/api/admin/users")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Administration", description = "Import en masse des utilisateurs")
+public class UserImportController {
+
+    private static final String TEXT_CSV = "text/csv";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private final UserImportService userImportService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${user.import.api-key:}")
+    private String apiKey;
+
+    @PostMapping(value = "/import", consumes = {TEXT_CSV, APPLICATION_NDJSON})
+    @Operation(summary = "Importer des utilisateurs",
+            description = "Importe un fichier CSV (en-tête firstName,lastName,email,phoneNumber) ou NDJSON. "
+                    + "La réponse NDJSON contient le résultat de chaque ligne puis le bilan de l'import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import effectué"),
+            @ApiResponse(responseCode = "400", description = "Fichier invalide"),
+            @ApiResponse(responseCode = "401", description = "Clé d'API absente ou invalide")
+    })
+    public void importUsers(@RequestHeader(value = "X-Api-Key", required = false) String providedApiKey,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        checkApiKey(providedApiKey);
+
+        UserImportService.Format format = MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(MediaType.parseMediaType(TEXT_CSV))
+                ? UserImportService.Format.CSV
+                : UserImportService.Format.NDJSON;
+        log.info("Démarrage d'un import {} d'utilisateurs", format);
+
+        // Les résultats sont écrits au fil de la lecture : ni le fichier ni le rapport ne sont gardés en mémoire.
+        // La réponse n'est ouverte qu'au premier résultat, pour qu'un fichier invalide reste une erreur 400
+        PrintWriter[] writer = new PrintWriter[1];
+        UserImportSummaryDto summary = userImportService.importUsers(request.getInputStream(), format,
+                row -> writeLine(response, writer, row));
+        writeLine(response, writer, com.exemple.testotp.dto.ApiResponse.success("Import terminé", summary));
+        writer[0].flush();
+    }
+
+    private void writeLine(HttpServletResponse response, PrintWriter[] writer, Object line) {
+        try {
+            if (writer[0] == null) {
+                response.setContentType(APPLICATION_NDJSON);
+                response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                writer[0] = response.getWriter();
+            }
+            writer[0].println(objectMapper.writeValueAsString(line));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkApiKey(String providedApiKey) {
+        if (apiKey.isBlank()) {
+            throw new InvalidApiKeyException("Import désactivé : aucune clé d'API configurée");
+        }
+        if (providedApiKey == null || !MessageDigest.isEqual(
+                apiKey.getBytes(StandardCharsets.UTF_8), providedApiKey.getBytes(StandardCharsets.UTF_8))) {
+            throw new InvalidApiKeyException("Clé d'API invalide");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.exemple.testotp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportRowResultDto {
+    private long line;
+    private String status;
+    private String email;
+    private String message;
+}
@@ -0,0 +1,18 @@
+package com.exemple.testotp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportSummaryDto {
+    private long total;
+    private long imported;
+    private long duplicates;
+    private long invalid;
+    private long failed;
+    private long durationMs;
+    private double rowsPerSecond;
+}
@@ -16,6 +16,17 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class OtpCode {
 
+    /**
+     * Statut de remise WhatsApp, par ordre de progression : un statut n'écrase qu'un statut antérieur.
+     */
+    public enum WhatsappStatus {
+        QUEUED,
+        SENT,
+        DELIVERED,
+        READ,
+        FAILED
+    }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -23,8 +34,12 @@ public class OtpCode {
     @Column(nullable = false)
     private String phoneNumber;
 
-    @Column(nullable = false)
-    private String code;
+    @Column(length = 64)
+    private String codeHash;
+
+    // Code chiffré par OtpCodeCipher, pour le rappel SMS, l'envoi de secours et le renvoi
+    @Column(length = 128)
+    private String codeCiphertext;
 
     @Column(nullable = false)
     private LocalDateTime expiresAt;
@@ -41,6 +56,17 @@ public class OtpCode {
     @Column
     private LocalDateTime smsReminderSentAt;
 
+    // Renvois du même code, bornés par otp.resend.max-count
+    @Column(nullable = false)
+    private int resendCount = 0;
+
+    @Column(length = 64)
+    private String whatsappMessageSid;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private WhatsappStatus whatsappStatus;
+
     public boolean isExpired() {
         return LocalDateTime.now().isAfter(expiresAt);
     }
@@ -0,0 +1,68 @@
+package com.exemple.testotp.entity;
+
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "outbound_messages")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboundMessage {
+
+    public enum Channel {
+        WHATSAPP,
+        SMS
+    }
+
+    public enum Status {
+        PENDING,
+        SENDING,
+        SENT,
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Channel channel;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    // Texte chiffré par OtpCodeCipher (destinataire en données associées) : il contient le code OTP
+    @Column(nullable = false, length = 1000)
+    private String body;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Bail posé lors de la réservation, pour reprendre un message si le worker tombe
+    private LocalDateTime lockedUntil;
+
+    private String providerMessageId;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    private LocalDateTime sentAt;
+}
@@ -16,6 +16,22 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class RegistrationSession {
 
+    /**
+     * Étapes de l'inscription, déduites de {@code otpVerified} et {@code completed} ; les transitions
+     * sont des UPDATE conditionnés sur l'étape courante (RegistrationSessionRepository).
+     */
+    public enum State {
+        STARTED,
+        OTP_VERIFIED,
+        COMPLETED
+    }
+
+    public enum CompletionStatus {
+        PROCESSING,
+        COMPLETED,
+        FAILED
+    }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -43,9 +59,27 @@ public class RegistrationSession {
 
     private LocalDateTime expiresAt;
 
+    @Enumerated(EnumType.STRING)
+    private CompletionStatus completionStatus;
+
+    private LocalDateTime completionStartedAt;
+
+    // Conservé dès la création dans Keycloak : une nouvelle tentative réutilise cet utilisateur
+    private String keycloakUserId;
+
+    @Column(length = 1000)
+    private String completionError;
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
+    public State getState() {
+        if (completed) {
+            return State.COMPLETED;
+        }
+        return otpVerified ? State.OTP_VERIFIED : State.STARTED;
+    }
+
     public boolean isExpired() {
         return LocalDateTime.now().isAfter(expiresAt);
     }
@@ -0,0 +1,39 @@
+package com.exemple.testotp.entity;
+
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Finalisation d'une inscription en mode jeton signé ({@code registration.session.mode=token}) :
+ * ensemble des jetons consommés, conservé jusqu'à leur expiration pour empêcher le rejeu.
+ */
+@Entity
+@Table(name = "registration_token_completions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RegistrationTokenCompletion {
+
+    @Id
+    private String tokenId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RegistrationSession.CompletionStatus status;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    private String keycloakUserId;
+
+    @Column(length = 1000)
+    private String error;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
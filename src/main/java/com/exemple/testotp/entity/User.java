@@ -17,8 +17,10 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class User {
 
+    // Séquence allouée par blocs (et non IDENTITY) pour que Hibernate puisse regrouper les INSERT
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -33,7 +35,8 @@ public class User {
     @Column(nullable = false, unique = true)
     private String phoneNumber;
 
-    @Column(nullable = false)
+    // Absent pour les comptes importés en masse
+    @Column
     private String password;
 
     @Column(nullable = false)
@@ -2,6 +2,7 @@ package com.exemple.testotp.exception;
 
 import com.exemple.testotp.dto.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -44,6 +45,58 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error(ex.getMessage()));
     }
 
+    @ExceptionHandler(InvalidSessionStateException.class)
+    public ResponseEntity<ApiResponse<Object>> handleInvalidSessionState(InvalidSessionStateException ex) {
+        log.warn("Invalid session state: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ApiResponse<Object>> handleRateLimitExceeded(RateLimitExceededException ex) {
+        log.warn("Rate limit exceeded: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
+    @ExceptionHandler(OtpAttemptsExceededException.class)
+    public ResponseEntity<ApiResponse<Object>> handleOtpAttemptsExceeded(OtpAttemptsExceededException ex) {
+        log.warn("OTP attempts exceeded: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
+    @ExceptionHandler(RegistrationBusyException.class)
+    public ResponseEntity<ApiResponse<Object>> handleRegistrationBusy(RegistrationBusyException ex) {
+        log.warn("Registration busy: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidApiKeyException.class)
+    public ResponseEntity<ApiResponse<Object>> handleInvalidApiKey(InvalidApiKeyException ex) {
+        log.warn("Invalid API key: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidSignatureException.class)
+    public ResponseEntity<ApiResponse<Object>> handleInvalidSignature(InvalidSignatureException ex) {
+        log.warn("Invalid webhook signature: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidImportFileException.class)
+    public ResponseEntity<ApiResponse<Object>> handleInvalidImportFile(InvalidImportFileException ex) {
+        log.warn("Invalid import file: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
     @ExceptionHandler(SmsException.class)
     public ResponseEntity<ApiResponse<Object>> handleSmsException(SmsException ex) {
         log.error("SMS error: {}", ex.getMessage(), ex);
@@ -0,0 +1,7 @@
+package com.exemple.testotp.exception;
+
+public class InvalidApiKeyException extends RuntimeException {
+    public InvalidApiKeyException(String message) {
+        super(message);
+    }
+}
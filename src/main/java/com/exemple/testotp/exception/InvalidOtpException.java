@@ -1,7 +1,8 @@
 package com.exemple.testotp.exception;
 
+// Un code incorrect est un cas attendu : pas de trace de pile à construire
 public class InvalidOtpException extends RuntimeException {
     public InvalidOtpException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
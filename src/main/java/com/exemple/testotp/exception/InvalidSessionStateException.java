@@ -0,0 +1,7 @@
+package com.exemple.testotp.exception;
+
+public class InvalidSessionStateException extends RuntimeException {
+    public InvalidSessionStateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.exemple.testotp.exception;
+
+public class InvalidSignatureException extends RuntimeException {
+    public InvalidSignatureException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package com.exemple.testotp.exception;
+
+/**
+ * Levée en masse par les appels abusifs : sans trace de pile, elle ne coûte que son allocation.
+ */
+public class OtpAttemptsExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public OtpAttemptsExceededException(String message, long retryAfterSeconds) {
+        super(message, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,7 @@
+package com.exemple.testotp.exception;
+
+public class RegistrationBusyException extends RuntimeException {
+    public RegistrationBusyException(String message) {
+        super(message);
+    }
+}
@@ -3,24 +3,129 @@ package com.exemple.testotp.repository;
 
 import com.exemple.testotp.entity.OtpCode;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OtpCodeRepository extends JpaRepository<OtpCode, Long> {
 
+    interface PendingReminder {
+        String getPhoneNumber();
+
+        LocalDateTime getWhatsappSentAt();
+    }
+
     @Query("SELECT o FROM OtpCode o WHERE o.phoneNumber = :phoneNumber AND o.used = false AND o.expiresAt > :now ORDER BY o.createdAt DESC")
     Optional<OtpCode> findValidOtpByPhoneNumber(@Param("phoneNumber") String phoneNumber, @Param("now") LocalDateTime now);
 
-    void deleteByPhoneNumberAndUsed(String phoneNumber, boolean used);
+    @Transactional
+    @Modifying
+    @Query("UPDATE OtpCode o SET o.used = true WHERE o.id IN :ids")
+    int markUsed(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Vérification et consommation en une seule instruction : une seule requête concurrente peut réussir.
+     * Retourne le nom du {@code OtpStore.ConsumeResult} ; le code non consommé dont l'empreinte diffère
+     * donne INCORRECT, l'absence de code valide (ou un code déjà consommé par une requête concurrente) NOT_FOUND.
+     * <p>
+     * Pas de {@code @Modifying} : l'instruction de tête est un SELECT qui retourne une ligne
+     * (l'UPDATE est dans la CTE), alors que {@code @Modifying} l'exécuterait comme une mise à jour sans résultat.
+     */
+    @Transactional
+    @Query(value = "WITH consumed AS (UPDATE otp_codes SET used = true WHERE phone_number = :phoneNumber " +
+            "AND used = false AND expires_at > :now AND code_hash = :codeHash RETURNING id) " +
+            "SELECT CASE WHEN EXISTS (SELECT 1 FROM consumed) THEN 'VERIFIED' " +
+            "WHEN EXISTS (SELECT 1 FROM otp_codes WHERE phone_number = :phoneNumber AND used = false " +
+            "AND expires_at > :now AND code_hash <> :codeHash) THEN 'INCORRECT' " +
+            "ELSE 'NOT_FOUND' END", nativeQuery = true)
+    String consumeOtp(@Param("phoneNumber") String phoneNumber,
+                      @Param("codeHash") String codeHash,
+                      @Param("now") LocalDateTime now);
+
+    // Suppression en une requête, sans charger les entités comme le ferait une suppression dérivée
+    @Modifying
+    @Query("DELETE FROM OtpCode o WHERE o.phoneNumber = :phoneNumber AND o.used = false")
+    int deleteUnusedByPhoneNumber(@Param("phoneNumber") String phoneNumber);
+
+    /**
+     * Renvoi du code en cours du numéro : seule la date d'envoi WhatsApp change. Vide si le code a été
+     * émis avant {@code issuedAfter}, déjà renvoyé {@code maxResends} fois ou n'a pas de chiffré à renvoyer.
+     */
+    @Transactional
+    @Query(value = "UPDATE otp_codes SET whatsapp_sent_at = :now, resend_count = resend_count + 1 " +
+            "WHERE id = (SELECT id FROM otp_codes WHERE phone_number = :phoneNumber AND used = false " +
+            "AND expires_at > :now ORDER BY created_at DESC LIMIT 1) " +
+            "AND created_at > :issuedAfter AND resend_count < :maxResends AND code_ciphertext IS NOT NULL " +
+            "RETURNING *", nativeQuery = true)
+    Optional<OtpCode> resendOtp(@Param("phoneNumber") String phoneNumber,
+                                @Param("now") LocalDateTime now,
+                                @Param("issuedAfter") LocalDateTime issuedAfter,
+                                @Param("maxResends") int maxResends);
+
+    @Modifying
+    @Query("DELETE FROM OtpCode o WHERE o.expiresAt < :dateTime")
+    int deleteExpiredBefore(@Param("dateTime") LocalDateTime dateTime);
+
+    /**
+     * Réserve une page de rappels échus en les marquant envoyés dans la même instruction ; la transaction
+     * se termine avant l'envoi des SMS. UPDATE ... RETURNING exécuté comme une requête, d'où l'absence de {@code @Modifying}.
+     */
+    @Transactional
+    @Query(value = "UPDATE otp_codes SET sms_reminder_sent_at = :claimedAt WHERE id IN (" +
+            "SELECT id FROM otp_codes WHERE used = false AND expires_at > :now " +
+            "AND whatsapp_sent_at IS NOT NULL AND whatsapp_sent_at <= :reminderTime AND sms_reminder_sent_at IS NULL " +
+            "AND code_ciphertext IS NOT NULL " +
+            "AND abs(CAST(hashtext(phone_number) AS BIGINT)) % :shardCount = :shardIndex " +
+            "AND id > :afterId ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+            "RETURNING *", nativeQuery = true)
+    List<OtpCode> claimOtpsForWhatsappReminder(@Param("now") LocalDateTime now,
+                                               @Param("reminderTime") LocalDateTime reminderTime,
+                                               @Param("shardIndex") int shardIndex,
+                                               @Param("shardCount") int shardCount,
+                                               @Param("afterId") long afterId,
+                                               @Param("limit") int limit,
+                                               @Param("claimedAt") LocalDateTime claimedAt);
+
+    // Envoi en échec : le rappel redevient dû, sauf s'il a été marqué autrement depuis la réservation
+    @Transactional
+    @Modifying
+    @Query("UPDATE OtpCode o SET o.smsReminderSentAt = NULL WHERE o.id IN :ids AND o.smsReminderSentAt = :claimedAt")
+    int releaseSmsReminder(@Param("ids") Collection<Long> ids, @Param("claimedAt") LocalDateTime claimedAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OtpCode o SET o.smsReminderSentAt = :sentAt WHERE o.phoneNumber = :phoneNumber " +
+            "AND o.used = false AND o.smsReminderSentAt IS NULL")
+    int markSmsReminderSentForPhone(@Param("phoneNumber") String phoneNumber, @Param("sentAt") LocalDateTime sentAt);
 
-    void deleteByExpiresAtBefore(LocalDateTime dateTime);
+    // Même réservation que claimOtpsForWhatsappReminder, pour le rappel d'un seul numéro
+    @Transactional
+    @Query(value = "UPDATE otp_codes SET sms_reminder_sent_at = :claimedAt WHERE id = (" +
+            "SELECT id FROM otp_codes WHERE phone_number = :phoneNumber AND used = false AND expires_at > :now " +
+            "AND whatsapp_sent_at IS NOT NULL AND whatsapp_sent_at <= :reminderTime AND sms_reminder_sent_at IS NULL " +
+            "AND code_ciphertext IS NOT NULL " +
+            "LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+            "RETURNING *", nativeQuery = true)
+    Optional<OtpCode> claimOtpForWhatsappReminder(@Param("phoneNumber") String phoneNumber,
+                                                  @Param("now") LocalDateTime now,
+                                                  @Param("reminderTime") LocalDateTime reminderTime,
+                                                  @Param("claimedAt") LocalDateTime claimedAt);
 
-    @Query("SELECT o FROM OtpCode o WHERE o.used = false AND o.expiresAt > :now AND o.whatsappSentAt IS NOT NULL AND o.whatsappSentAt <= :reminderTime AND o.smsReminderSentAt IS NULL")
-    List<OtpCode> findOtpForWhatsappReminder(@Param("now") LocalDateTime now, @Param("reminderTime") LocalDateTime reminderTime);
-}
\ No newline at end of file
+    // Partition d'un numéro : même fonction de hachage que claimOtpsForWhatsappReminder
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT phone_number AS \"phoneNumber\", whatsapp_sent_at AS \"whatsappSentAt\" FROM otp_codes " +
+            "WHERE used = false AND expires_at > :now AND whatsapp_sent_at IS NOT NULL AND sms_reminder_sent_at IS NULL " +
+            "AND code_ciphertext IS NOT NULL " +
+            "AND abs(CAST(hashtext(phone_number) AS BIGINT)) % :shardCount = :shardIndex", nativeQuery = true)
+    List<PendingReminder> findPendingReminders(@Param("now") LocalDateTime now,
+                                               @Param("shardIndex") int shardIndex,
+                                               @Param("shardCount") int shardCount);
+}
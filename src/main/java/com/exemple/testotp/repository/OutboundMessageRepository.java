@@ -0,0 +1,60 @@
+package com.exemple.testotp.repository;
+
+import com.exemple.testotp.entity.OutboundMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboundMessageRepository extends JpaRepository<OutboundMessage, Long> {
+
+    @Query(value = "SELECT * FROM outbound_messages " +
+            "WHERE (status = 'PENDING' AND next_attempt_at <= :now) " +
+            "OR (status = 'SENDING' AND locked_until < :now) " +
+            "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboundMessage> findClaimable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE OutboundMessage m SET m.status = :status, m.lockedUntil = :lockedUntil WHERE m.id IN :ids")
+    int markSending(@Param("ids") Collection<Long> ids,
+                    @Param("status") OutboundMessage.Status status,
+                    @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    // Le corps (code OTP chiffré) est effacé une fois le message parti
+    @Modifying
+    @Query("UPDATE OutboundMessage m SET m.status = :status, m.attempts = m.attempts + 1, m.sentAt = :sentAt, " +
+            "m.channel = :channel, m.providerMessageId = :providerMessageId, m.lockedUntil = null, m.lastError = null, " +
+            "m.body = '' WHERE m.id = :id")
+    int markSent(@Param("id") Long id,
+                 @Param("status") OutboundMessage.Status status,
+                 @Param("sentAt") LocalDateTime sentAt,
+                 @Param("channel") OutboundMessage.Channel channel,
+                 @Param("providerMessageId") String providerMessageId);
+
+    @Modifying
+    @Query("UPDATE OutboundMessage m SET m.status = :status, m.attempts = m.attempts + 1, " +
+            "m.nextAttemptAt = :nextAttemptAt, m.lockedUntil = null, m.lastError = :lastError WHERE m.id = :id")
+    int markAttemptFailed(@Param("id") Long id,
+                          @Param("status") OutboundMessage.Status status,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                          @Param("lastError") String lastError);
+
+    // Abandon : le corps n'a plus à être conservé, comme pour un message parti
+    @Modifying
+    @Query("UPDATE OutboundMessage m SET m.status = :status, m.attempts = m.attempts + 1, m.lockedUntil = null, " +
+            "m.lastError = :lastError, m.body = '' WHERE m.id = :id")
+    int markFailed(@Param("id") Long id,
+                   @Param("status") OutboundMessage.Status status,
+                   @Param("lastError") String lastError);
+
+    @Modifying
+    @Query("DELETE FROM OutboundMessage m WHERE m.status IN :statuses AND m.createdAt < :before")
+    int deleteFinishedBefore(@Param("statuses") Collection<OutboundMessage.Status> statuses,
+                             @Param("before") LocalDateTime before);
+}
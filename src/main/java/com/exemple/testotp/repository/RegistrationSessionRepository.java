@@ -2,14 +2,81 @@ package com.exemple.testotp.repository;
 
 import com.exemple.testotp.entity.RegistrationSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
 public interface RegistrationSessionRepository extends JpaRepository<RegistrationSession, Long> {
+
+    interface SessionCounts {
+        long getActive();
+
+        Long getOtpVerified();
+    }
+
     Optional<RegistrationSession> findBySessionId(String sessionId);
-    void deleteByExpiresAtBefore(LocalDateTime dateTime);
-    void deleteByCompleted(boolean completed);
+
+    @Transactional(readOnly = true)
+    @Query("SELECT COUNT(s) AS active, SUM(CASE WHEN s.otpVerified = true THEN 1 ELSE 0 END) AS otpVerified " +
+            "FROM RegistrationSession s WHERE s.completed = false AND s.expiresAt > :now")
+    SessionCounts countOpenSessions(@Param("now") LocalDateTime now);
+
+    /**
+     * Transition STARTED → OTP_VERIFIED : retourne la session mise à jour, vide si elle n'était pas
+     * dans l'état STARTED ou a expiré.
+     */
+    @Transactional
+    @Query(value = "UPDATE registration_sessions SET otp_verified = true " +
+            "WHERE session_id = :sessionId AND otp_verified = false AND completed = false AND expires_at > :now " +
+            "RETURNING *", nativeQuery = true)
+    Optional<RegistrationSession> markOtpVerified(@Param("sessionId") String sessionId, @Param("now") LocalDateTime now);
+
+    /**
+     * Réserve la finalisation de la session : une seule requête à la fois, et aucune une fois terminée.
+     * Une finalisation en échec, ou bloquée depuis {@code staleBefore}, peut être relancée.
+     * Retourne la session réservée, vide si la transition est refusée.
+     */
+    @Transactional
+    @Query(value = "UPDATE registration_sessions SET completion_status = 'PROCESSING', completion_started_at = :now, " +
+            "completion_error = NULL " +
+            "WHERE session_id = :sessionId AND otp_verified = true AND completed = false AND expires_at > :now " +
+            "AND (completion_status IS NULL OR completion_status = 'FAILED' " +
+            "OR (completion_status = 'PROCESSING' AND completion_started_at < :staleBefore)) " +
+            "RETURNING *", nativeQuery = true)
+    Optional<RegistrationSession> claimCompletion(@Param("sessionId") String sessionId,
+                                                  @Param("now") LocalDateTime now,
+                                                  @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Modifying
+    @Query("UPDATE RegistrationSession s SET s.keycloakUserId = :keycloakUserId WHERE s.sessionId = :sessionId")
+    int recordKeycloakUser(@Param("sessionId") String sessionId, @Param("keycloakUserId") String keycloakUserId);
+
+    @Modifying
+    @Query("UPDATE RegistrationSession s SET s.completed = true, s.completionStatus = :status, s.completionError = null " +
+            "WHERE s.sessionId = :sessionId AND s.completed = false AND s.completionStatus = :expected")
+    int markCompleted(@Param("sessionId") String sessionId,
+                      @Param("expected") RegistrationSession.CompletionStatus expected,
+                      @Param("status") RegistrationSession.CompletionStatus status);
+
+    @Modifying
+    @Query("UPDATE RegistrationSession s SET s.completionStatus = :status, s.completionError = :error " +
+            "WHERE s.sessionId = :sessionId AND s.completed = false AND s.completionStatus = :expected")
+    int markCompletionFailed(@Param("sessionId") String sessionId,
+                             @Param("expected") RegistrationSession.CompletionStatus expected,
+                             @Param("status") RegistrationSession.CompletionStatus status,
+                             @Param("error") String error);
+
+    @Modifying
+    @Query("DELETE FROM RegistrationSession s WHERE s.expiresAt < :dateTime")
+    int deleteExpiredBefore(@Param("dateTime") LocalDateTime dateTime);
+
+    @Modifying
+    @Query("DELETE FROM RegistrationSession s WHERE s.completed = true")
+    int deleteCompleted();
 }
@@ -0,0 +1,43 @@
+package com.exemple.testotp.repository;
+
+import com.exemple.testotp.entity.RegistrationSession;
+import com.exemple.testotp.entity.RegistrationTokenCompletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface RegistrationTokenCompletionRepository extends JpaRepository<RegistrationTokenCompletion, String> {
+
+    // Insère le jeton comme consommé, ou reprend une finalisation en échec / interrompue ; 0 sinon
+    @Modifying
+    @Query(value = "INSERT INTO registration_token_completions AS c (token_id, status, started_at, expires_at) " +
+            "VALUES (:tokenId, 'PROCESSING', :now, :expiresAt) " +
+            "ON CONFLICT (token_id) DO UPDATE SET status = 'PROCESSING', started_at = :now, error = NULL " +
+            "WHERE c.status = 'FAILED' OR (c.status = 'PROCESSING' AND c.started_at < :staleBefore)",
+            nativeQuery = true)
+    int claim(@Param("tokenId") String tokenId,
+              @Param("now") LocalDateTime now,
+              @Param("expiresAt") LocalDateTime expiresAt,
+              @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Modifying
+    @Query("UPDATE RegistrationTokenCompletion c SET c.keycloakUserId = :keycloakUserId WHERE c.tokenId = :tokenId")
+    int recordKeycloakUser(@Param("tokenId") String tokenId, @Param("keycloakUserId") String keycloakUserId);
+
+    @Modifying
+    @Query("UPDATE RegistrationTokenCompletion c SET c.status = :status, c.error = :error " +
+            "WHERE c.tokenId = :tokenId AND c.status = :expected")
+    int updateStatus(@Param("tokenId") String tokenId,
+                     @Param("expected") RegistrationSession.CompletionStatus expected,
+                     @Param("status") RegistrationSession.CompletionStatus status,
+                     @Param("error") String error);
+
+    @Modifying
+    @Query("DELETE FROM RegistrationTokenCompletion c WHERE c.expiresAt < :dateTime")
+    int deleteExpiredBefore(@Param("dateTime") LocalDateTime dateTime);
+}
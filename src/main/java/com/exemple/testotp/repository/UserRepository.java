@@ -1,15 +1,58 @@
 package com.exemple.testotp.repository;
 
 import com.exemple.testotp.entity.User;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+
+    interface UserIdentifiers {
+        String getEmail();
+
+        String getPhoneNumber();
+    }
+
+    interface TakenIdentifiers {
+        boolean getEmailTaken();
+
+        boolean getPhoneNumberTaken();
+    }
+
     Optional<User> findByEmail(String email);
     Optional<User> findByPhoneNumber(String phoneNumber);
+
+    // Lectures tolérant le retard d'un réplica : la contrainte UNIQUE reste le garde-fou
+    @Transactional(readOnly = true)
     boolean existsByEmail(String email);
+
+    @Transactional(readOnly = true)
     boolean existsByPhoneNumber(String phoneNumber);
+
+    // Les deux vérifications d'unicité en un seul aller-retour
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM users WHERE email = :email) AS emailTaken, " +
+            "EXISTS (SELECT 1 FROM users WHERE phone_number = :phoneNumber) AS phoneNumberTaken",
+            nativeQuery = true)
+    TakenIdentifiers findTakenIdentifiers(@Param("email") String email, @Param("phoneNumber") String phoneNumber);
+
+    @Transactional(readOnly = true)
+    @Query("SELECT u.email AS email, u.phoneNumber AS phoneNumber FROM User u " +
+            "WHERE u.email IN :emails OR u.phoneNumber IN :phoneNumbers")
+    List<UserIdentifiers> findIdentifiersIn(@Param("emails") Collection<String> emails,
+                                            @Param("phoneNumbers") Collection<String> phoneNumbers);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.email AS email, u.phoneNumber AS phoneNumber FROM User u")
+    Stream<UserIdentifiers> streamIdentifiers();
 }
@@ -1,12 +1,17 @@
 package com.exemple.testotp.scheduler;
 
 import com.exemple.testotp.service.OtpService;
+import com.exemple.testotp.service.OutboxService;
+import com.exemple.testotp.service.PartitionMaintenanceService;
 import com.exemple.testotp.service.RegistrationSessionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
@@ -14,26 +19,40 @@ public class CleanupScheduler {
 
     private final OtpService otpService;
     private final RegistrationSessionService sessionService;
+    private final OutboxService outboxService;
+    private final PartitionMaintenanceService partitionMaintenanceService;
+    private final SchedulerLeases schedulerLeases;
+
+    @Value("${cleanup.lease.minutes:50}")
+    private int leaseMinutes;
 
     @Scheduled(fixedRate = 3600000) // Chaque heure
     public void cleanupExpiredData() {
+        // Une seule instance du cluster nettoie par heure
+        if (!schedulerLeases.tryAcquire("cleanup", Duration.ofMinutes(leaseMinutes))) {
+            return;
+        }
         log.info("Démarrage du nettoyage des données expirées");
 
         try {
-            otpService.cleanupExpiredOtps();
-            sessionService.cleanupExpiredSessions();
+            boolean partitioned = partitionMaintenanceService.isEnabled();
+            if (partitioned) {
+                // Schéma partitionné : suppression des partitions expirées et création des suivantes ;
+                // les sessions terminées partent avec leur partition, sans DELETE ligne à ligne
+                partitionMaintenanceService.dropExpiredPartitions();
+                partitionMaintenanceService.ensureUpcomingPartitions();
+            } else {
+                otpService.cleanupExpiredOtps();
+            }
+            // Sessions du mode token : leurs traces de finalisation sont hors des tables partitionnées
+            if (!partitioned || !sessionService.isStoredInSessionTable()) {
+                sessionService.cleanupExpiredSessions();
+                sessionService.cleanupCompletedSessions();
+            }
+            outboxService.cleanupFinishedMessages();
             log.info("Nettoyage des données expirées terminé avec succès");
         } catch (Exception e) {
             log.error("Erreur lors du nettoyage des données expirées", e);
         }
     }
-
-    @Scheduled(fixedRate = 60000) // Chaque minute
-    public void sendWhatsappReminders() {
-        try {
-            otpService.sendWhatsappReminderIfNotVerified();
-        } catch (Exception e) {
-            log.error("Erreur lors de l'envoi des rappels WhatsApp/SMS", e);
-        }
-    }
-}
\ No newline at end of file
+}
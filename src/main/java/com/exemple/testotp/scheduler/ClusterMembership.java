@@ -0,0 +1,101 @@
+package com.exemple.testotp.scheduler;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Instances vivantes du cluster, suivies par battement de cœur dans {@code scheduler_nodes}.
+ * <p>
+ * Chaque instance occupe le rang de son identifiant dans la liste triée des instances vivantes :
+ * ce rang et le nombre d'instances forment sa partition ({@link Shard}). Une instance sans battement
+ * depuis {@code cluster.heartbeat.timeout.ms} est retirée, et tout changement de partition est
+ * publié ({@link ShardChangedEvent}) pour que les survivantes reprennent son travail.
+ * Les dates viennent de l'horloge de la base : pas de dépendance à la synchronisation des instances.
+ */
+@Component
+@Slf4j
+public class ClusterMembership {
+
+    public record Shard(int index, int count) {
+    }
+
+    public record ShardChangedEvent(Shard shard) {
+    }
+
+    private static final String HEARTBEAT_SQL = """
+            INSERT INTO scheduler_nodes (node_id, started_at, heartbeat_at) VALUES (?, now(), now())
+            ON CONFLICT (node_id) DO UPDATE SET heartbeat_at = now()""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String nodeId;
+
+    @Value("${cluster.heartbeat.timeout.ms:15000}")
+    private long heartbeatTimeoutMillis;
+
+    private volatile Shard shard;
+
+    public ClusterMembership(JdbcTemplate jdbcTemplate,
+                             ApplicationEventPublisher eventPublisher,
+                             MeterRegistry meterRegistry,
+                             @Value("${cluster.node-id:}") String nodeId) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        Gauge.builder("cluster.nodes", this, membership -> membership.shard == null ? 0 : membership.shard.count())
+                .description("Instances vivantes vues par cette instance")
+                .register(meterRegistry);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Partition courante, ou {@code null} tant que le premier battement n'a pas abouti.
+     */
+    public Shard getShard() {
+        return shard;
+    }
+
+    @Scheduled(fixedDelayString = "${cluster.heartbeat.interval.ms:5000}")
+    public void heartbeat() {
+        try {
+            jdbcTemplate.update(HEARTBEAT_SQL, nodeId);
+            jdbcTemplate.update("DELETE FROM scheduler_nodes WHERE heartbeat_at < now() - ? * interval '1 millisecond'",
+                    heartbeatTimeoutMillis);
+            List<String> nodes = jdbcTemplate.queryForList(
+                    "SELECT node_id FROM scheduler_nodes ORDER BY node_id", String.class);
+
+            Shard current = new Shard(nodes.indexOf(nodeId), nodes.size());
+            if (!current.equals(shard)) {
+                log.info("Instance {} : partition {}/{} des tâches planifiées", nodeId, current.index() + 1, current.count());
+                shard = current;
+                eventPublisher.publishEvent(new ShardChangedEvent(current));
+            }
+        } catch (Exception e) {
+            // La partition précédente reste en vigueur ; les autres instances nous retireront après le délai
+            log.error("Erreur lors du battement de cœur de l'instance {}", nodeId, e);
+        }
+    }
+
+    @PreDestroy
+    public void leave() {
+        // Départ immédiat plutôt qu'à l'expiration du délai : les autres instances reprennent la partition
+        try {
+            jdbcTemplate.update("DELETE FROM scheduler_nodes WHERE node_id = ?", nodeId);
+        } catch (Exception e) {
+            log.warn("Impossible de retirer l'instance {} du cluster: {}", nodeId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.exemple.testotp.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Roue temporelle hiérarchique : une échéance par clé, planifiée et annulée en O(1).
+ * <p>
+ * Chaque niveau couvre {@code wheelSize} fois l'intervalle du niveau inférieur ; une échéance lointaine
+ * est rangée dans un niveau supérieur puis redescend quand sa case expire. Seules les cases non vides
+ * sont placées dans une {@link DelayQueue} : le thread de la roue dort jusqu'à la prochaine échéance,
+ * sans tic à vide. Une échéance ne se déclenche jamais avant son heure, au plus un tic après.
+ */
+@Slf4j
+final class HierarchicalTimingWheel<K> implements AutoCloseable {
+
+    private static final class Entry<K> {
+        private final K key;
+        private final long deadline;
+        private Bucket<K> bucket;
+
+        private Entry(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class Bucket<K> implements Delayed {
+        private final Set<Entry<K>> entries = new HashSet<>();
+        private final AtomicLong expiration = new AtomicLong(-1);
+
+        private void add(Entry<K> entry) {
+            entries.add(entry);
+            entry.bucket = this;
+        }
+
+        private void remove(Entry<K> entry) {
+            entries.remove(entry);
+            entry.bucket = null;
+        }
+
+        /**
+         * Vrai si l'échéance de la case a changé : elle doit alors être (re)placée dans la file.
+         */
+        private boolean setExpiration(long expirationMillis) {
+            return expiration.getAndSet(expirationMillis) != expirationMillis;
+        }
+
+        private List<Entry<K>> flush() {
+            List<Entry<K>> flushed = new ArrayList<>(entries);
+            flushed.forEach(entry -> entry.bucket = null);
+            entries.clear();
+            expiration.set(-1);
+            return flushed;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiration.get() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiration.get(), ((Bucket<?>) other).expiration.get());
+        }
+    }
+
+    private final class Level {
+        private final long tickMillis;
+        private final long intervalMillis;
+        private final boolean roundUp;
+        private final List<Bucket<K>> buckets;
+        private long currentTime;
+        private Level overflow;
+
+        private Level(long tickMillis, long startMillis, boolean roundUp) {
+            this.tickMillis = tickMillis;
+            this.intervalMillis = tickMillis * wheelSize;
+            this.roundUp = roundUp;
+            this.buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new Bucket<>());
+            }
+            this.currentTime = startMillis - startMillis % tickMillis;
+        }
+
+        /**
+         * Range l'entrée dans ce niveau ou un niveau supérieur ; faux si elle est déjà échue.
+         */
+        private boolean add(Entry<K> entry) {
+            long deadline = entry.deadline;
+            if (deadline <= currentTime) {
+                return false;
+            }
+            if (deadline < currentTime + intervalMillis || (roundUp && deadline == currentTime + intervalMillis)) {
+                // Premier niveau : case arrondie au tic supérieur (jamais de déclenchement en avance) ;
+                // niveaux supérieurs : tic inférieur, l'entrée redescend à l'expiration de la case
+                long virtualId = roundUp ? Math.ceilDiv(deadline, tickMillis) : deadline / tickMillis;
+                Bucket<K> bucket = buckets.get((int) (virtualId % wheelSize));
+                bucket.add(entry);
+                if (bucket.setExpiration(virtualId * tickMillis)) {
+                    queue.offer(bucket);
+                }
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level(intervalMillis, currentTime, false);
+            }
+            return overflow.add(entry);
+        }
+
+        private void advanceClock(long timeMillis) {
+            if (timeMillis >= currentTime + tickMillis) {
+                currentTime = timeMillis - timeMillis % tickMillis;
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+
+    private final int wheelSize;
+    private final Consumer<K> onExpiry;
+    private final DelayQueue<Bucket<K>> queue = new DelayQueue<>();
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Level root;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * @param onExpiry appelé sur le thread de la roue : doit rendre la main rapidement
+     */
+    HierarchicalTimingWheel(String name, long tickMillis, int wheelSize, Consumer<K> onExpiry) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("Tic et taille de roue invalides: " + tickMillis + "ms / " + wheelSize);
+        }
+        this.wheelSize = wheelSize;
+        this.onExpiry = onExpiry;
+        this.root = new Level(tickMillis, System.currentTimeMillis(), true);
+        this.worker = Thread.ofPlatform().name(name).daemon().unstarted(this::run);
+        this.worker.start();
+    }
+
+    /**
+     * Planifie (ou replanifie) l'échéance de la clé ; une échéance passée se déclenche immédiatement.
+     */
+    void schedule(K key, long deadlineMillis) {
+        schedule(key, deadlineMillis, true);
+    }
+
+    /**
+     * Planifie l'échéance de la clé sauf si une échéance est déjà en attente pour elle.
+     */
+    void scheduleIfAbsent(K key, long deadlineMillis) {
+        schedule(key, deadlineMillis, false);
+    }
+
+    private void schedule(K key, long deadlineMillis, boolean replace) {
+        Entry<K> entry = new Entry<>(key, deadlineMillis);
+        boolean expired;
+        lock.lock();
+        try {
+            if (!replace && entries.containsKey(key)) {
+                return;
+            }
+            removeEntry(entries.remove(key));
+            expired = !root.add(entry);
+            if (!expired) {
+                entries.put(key, entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (expired) {
+            fire(key);
+        }
+    }
+
+    boolean cancel(K key) {
+        lock.lock();
+        try {
+            Entry<K> entry = entries.remove(key);
+            removeEntry(entry);
+            return entry != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void removeEntry(Entry<K> entry) {
+        if (entry != null && entry.bucket != null) {
+            entry.bucket.remove(entry);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Bucket<K> bucket = queue.take();
+                List<K> expired = new ArrayList<>();
+                lock.lock();
+                try {
+                    // Traiter d'un coup toutes les cases échues pour limiter les réveils
+                    while (bucket != null) {
+                        advance(bucket, expired);
+                        bucket = queue.poll();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                expired.forEach(this::fire);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void advance(Bucket<K> bucket, List<K> expired) {
+        long expiration = bucket.expiration.get();
+        if (expiration < 0) {
+            return;
+        }
+        root.advanceClock(expiration);
+        for (Entry<K> entry : bucket.flush()) {
+            // Descendre d'un niveau, ou déclencher si l'échéance est atteinte
+            if (!root.add(entry)) {
+                entries.remove(entry.key, entry);
+                expired.add(entry.key);
+            }
+        }
+    }
+
+    private void fire(K key) {
+        try {
+            onExpiry.accept(key);
+        } catch (RuntimeException e) {
+            log.error("Erreur lors du traitement de l'échéance {}", key, e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.exemple.testotp.scheduler;
+
+import com.exemple.testotp.entity.OutboundMessage;
+import com.exemple.testotp.service.DeliveryStatusService;
+import com.exemple.testotp.service.MessageChannelRouter;
+import com.exemple.testotp.service.OutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Envoi des messages de l'outbox par lots réservés.
+ * <p>
+ * Un message parti dont l'état n'a pas pu être enregistré (base indisponible) n'est pas renvoyé :
+ * sa remise est gardée en mémoire et réécrite aux passages suivants, y compris si le bail du message
+ * expire et qu'il est de nouveau réservé. Seul un arrêt de l'instance avant cette écriture peut
+ * encore conduire à un renvoi.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxDispatcher {
+
+    private final OutboxService outboxService;
+    private final MessageChannelRouter channelRouter;
+    private final DeliveryStatusService deliveryStatusService;
+    private final AsyncTaskExecutor outboxExecutor;
+
+    private record UnrecordedDelivery(String recipient, MessageChannelRouter.Delivery delivery) {
+    }
+
+    private final Map<Long, UnrecordedDelivery> unrecordedDeliveries = new ConcurrentHashMap<>();
+
+    @Value("${outbox.batch.size:50}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${outbox.poll.interval.ms:1000}")
+    public void dispatchPendingMessages() {
+        try {
+            recordPendingDeliveries();
+
+            List<OutboundMessage> batch;
+            do {
+                batch = outboxService.claimBatch(batchSize);
+                if (batch.isEmpty()) {
+                    return;
+                }
+                log.debug("Envoi d'un lot de {} messages sortants", batch.size());
+
+                CompletableFuture<?>[] deliveries = batch.stream()
+                        .map(message -> CompletableFuture.runAsync(() -> deliver(message), outboxExecutor))
+                        .toArray(CompletableFuture[]::new);
+                CompletableFuture.allOf(deliveries).join();
+            } while (batch.size() == batchSize);
+        } catch (Exception e) {
+            log.error("Erreur lors de l'envoi des messages sortants", e);
+        }
+    }
+
+    private void deliver(OutboundMessage message) {
+        // Bail expiré d'un message déjà parti : seule l'écriture de son état est refaite
+        UnrecordedDelivery unrecorded = unrecordedDeliveries.get(message.getId());
+        if (unrecorded != null) {
+            recordDelivery(message.getId(), unrecorded);
+            return;
+        }
+
+        MessageChannelRouter.Delivery delivery;
+        try {
+            delivery = channelRouter.send(message.getChannel(), message.getRecipient(), outboxService.readBody(message));
+        } catch (RuntimeException e) {
+            markAttemptFailed(message, e);
+            return;
+        }
+        recordDelivery(message.getId(), new UnrecordedDelivery(message.getRecipient(), delivery));
+    }
+
+    private void recordPendingDeliveries() {
+        unrecordedDeliveries.forEach(this::recordDelivery);
+    }
+
+    // Message parti : un échec d'écriture est retenté sans renvoyer le message
+    private void recordDelivery(Long messageId, UnrecordedDelivery sent) {
+        MessageChannelRouter.Delivery delivery = sent.delivery();
+        try {
+            outboxService.markSent(messageId, delivery);
+        } catch (RuntimeException e) {
+            if (unrecordedDeliveries.put(messageId, sent) == null) {
+                log.error("Message {} envoyé ({}) mais non enregistré, écriture reportée: {}",
+                        messageId, delivery.providerMessageId(), e.getMessage());
+            }
+            return;
+        }
+        unrecordedDeliveries.remove(messageId);
+        if (delivery.channel() == OutboundMessage.Channel.WHATSAPP) {
+            registerWhatsappMessage(sent.recipient(), delivery);
+        }
+    }
+
+    private void markAttemptFailed(OutboundMessage message, RuntimeException error) {
+        try {
+            outboxService.markAttemptFailed(message, error);
+        } catch (RuntimeException e) {
+            // Rien n'est parti : le message sera repris à l'expiration de son bail
+            log.warn("Impossible d'enregistrer l'échec du message {}: {}", message.getId(), e.getMessage());
+        }
+    }
+
+    private void registerWhatsappMessage(String recipient, MessageChannelRouter.Delivery delivery) {
+        // Les callbacks de statut de remise retrouvent l'OTP par ce SID ; sans lui, le rappel reste planifié
+        try {
+            deliveryStatusService.registerWhatsappMessage(recipient, delivery.providerMessageId());
+        } catch (Exception e) {
+            log.warn("Impossible d'associer le message {} à son OTP: {}", delivery.providerMessageId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.exemple.testotp.scheduler;
+
+import com.exemple.testotp.entity.OutboundMessage;
+import com.exemple.testotp.repository.OtpCodeRepository;
+import com.exemple.testotp.service.DeliveryStatusService;
+import com.exemple.testotp.service.MessageChannelRouter;
+import com.exemple.testotp.service.OtpService;
+import com.exemple.testotp.service.ReminderDispatcher;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Déclenche chaque SMS de rappel à son échéance, sans scruter la table {@code otp_codes}.
+ * <p>
+ * L'échéance est inscrite dans la roue temporelle en mémoire de l'instance qui a émis l'OTP, après
+ * le commit, et retirée dès sa vérification. Chaque instance répond aussi d'une partition des numéros
+ * ({@link ClusterMembership}) : à son arrivée et à chaque départ ou arrivée d'une autre instance, elle
+ * rattrape les rappels échus de sa partition puis recharge ses échéances restantes, ce qui reprend
+ * celles d'une instance arrêtée. Une échéance présente sur deux instances n'est envoyée qu'une fois :
+ * le rappel est réservé ({@code FOR UPDATE SKIP LOCKED}) et marqué dans la même transaction.
+ * Un envoi en échec est reprogrammé après {@code otp.reminder.retry.delay.seconds}. Un OTP déjà
+ * envoyé par SMS faute de WhatsApp sain ({@link MessageChannelRouter}) n'a pas de rappel ; un message
+ * WhatsApp signalé non remis ({@link DeliveryStatusService}) déclenche le SMS sans attendre l'échéance.
+ */
+@Component
+@Slf4j
+public class ReminderScheduler {
+
+    private final ReminderDispatcher reminderDispatcher;
+    private final OtpCodeRepository otpCodeRepository;
+    private final AsyncTaskExecutor reminderExecutor;
+    private final HierarchicalTimingWheel<String> wheel;
+    private final Lock rebuildLock = new ReentrantLock();
+
+    @Value("${otp.sms.reminder.delay.minutes:5}")
+    private int smsReminderDelayMinutes;
+
+    @Value("${otp.reminder.retry.delay.seconds:60}")
+    private int retryDelaySeconds;
+
+    public ReminderScheduler(ReminderDispatcher reminderDispatcher,
+                             OtpCodeRepository otpCodeRepository,
+                             AsyncTaskExecutor reminderExecutor,
+                             MeterRegistry meterRegistry,
+                             @Value("${otp.reminder.wheel.tick.ms:1000}") long tickMillis,
+                             @Value("${otp.reminder.wheel.size:64}") int wheelSize) {
+        this.reminderDispatcher = reminderDispatcher;
+        this.otpCodeRepository = otpCodeRepository;
+        this.reminderExecutor = reminderExecutor;
+        this.wheel = new HierarchicalTimingWheel<>("reminder-wheel", tickMillis, wheelSize, this::onDeadline);
+        Gauge.builder("otp.reminder.backlog", wheel, HierarchicalTimingWheel::size)
+                .description("SMS de rappel programmés")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOtpIssued(OtpService.OtpIssuedEvent event) {
+        schedule(event.phoneNumber(), event.whatsappSentAt());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOtpVerified(OtpService.OtpVerifiedEvent event) {
+        wheel.cancel(event.phoneNumber());
+    }
+
+    @EventListener
+    public void onMessageRerouted(MessageChannelRouter.ReroutedEvent event) {
+        if (event.requested() == OutboundMessage.Channel.WHATSAPP && event.used() == OutboundMessage.Channel.SMS) {
+            wheel.cancel(event.recipient());
+            reminderDispatcher.skipReminder(event.recipient());
+        }
+    }
+
+    @EventListener
+    public void onWhatsappFailed(DeliveryStatusService.WhatsappFailedEvent event) {
+        wheel.cancel(event.phoneNumber());
+        reminderExecutor.execute(() -> dispatch(event.phoneNumber(), true));
+    }
+
+    @EventListener
+    public void onShardChanged(ClusterMembership.ShardChangedEvent event) {
+        // Hors du thread du battement de cœur : un rattrapage long ne doit pas nous faire passer pour arrêtés
+        reminderExecutor.execute(() -> rebuild(event.shard()));
+    }
+
+    private void rebuild(ClusterMembership.Shard shard) {
+        rebuildLock.lock();
+        try {
+            reminderDispatcher.dispatchPendingReminders(shard.index(), shard.count());
+
+            List<OtpCodeRepository.PendingReminder> pending =
+                    otpCodeRepository.findPendingReminders(LocalDateTime.now(), shard.index(), shard.count());
+            // Une échéance déjà connue (OTP émis ici, relance en attente) est conservée
+            pending.forEach(reminder -> wheel.scheduleIfAbsent(reminder.getPhoneNumber(), deadline(reminder.getWhatsappSentAt())));
+            log.info("{} SMS de rappel en attente pour la partition {}/{}", pending.size(), shard.index() + 1, shard.count());
+        } catch (Exception e) {
+            log.error("Erreur lors du chargement des rappels WhatsApp/SMS en attente", e);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.close();
+    }
+
+    private void schedule(String phoneNumber, LocalDateTime whatsappSentAt) {
+        wheel.schedule(phoneNumber, deadline(whatsappSentAt));
+    }
+
+    private long deadline(LocalDateTime whatsappSentAt) {
+        LocalDateTime remindAt = whatsappSentAt.plusMinutes(smsReminderDelayMinutes);
+        return remindAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void onDeadline(String phoneNumber) {
+        // Hors du thread de la roue : l'envoi Twilio est bloquant
+        reminderExecutor.execute(() -> dispatch(phoneNumber, false));
+    }
+
+    private void dispatch(String phoneNumber, boolean fallback) {
+        ReminderDispatcher.ReminderOutcome outcome;
+        try {
+            outcome = fallback
+                    ? reminderDispatcher.dispatchFallback(phoneNumber)
+                    : reminderDispatcher.dispatchReminder(phoneNumber);
+        } catch (Exception e) {
+            log.error("Erreur lors de l'envoi du rappel WhatsApp/SMS", e);
+            outcome = ReminderDispatcher.ReminderOutcome.FAILED;
+        }
+        if (outcome == ReminderDispatcher.ReminderOutcome.FAILED) {
+            // Un nouvel OTP envoyé entre-temps a déjà sa propre échéance
+            wheel.scheduleIfAbsent(phoneNumber, System.currentTimeMillis() + retryDelaySeconds * 1000L);
+        }
+    }
+}
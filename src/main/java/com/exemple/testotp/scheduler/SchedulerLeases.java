@@ -0,0 +1,36 @@
+package com.exemple.testotp.scheduler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Baux exclusifs dans {@code scheduler_leases} : une tâche planifiée sur toutes les instances
+ * ne s'exécute que sur celle qui obtient le bail. Le bail n'est pas rendu après l'exécution,
+ * il expire seul : la tâche tourne au plus une fois par durée de bail dans le cluster.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SchedulerLeases {
+
+    // Le bail n'est repris que s'il a expiré ou s'il appartient déjà à cette instance
+    private static final String ACQUIRE_SQL = """
+            INSERT INTO scheduler_leases AS l (name, owner, expires_at) VALUES (?, ?, now() + ? * interval '1 millisecond')
+            ON CONFLICT (name) DO UPDATE SET owner = EXCLUDED.owner, expires_at = EXCLUDED.expires_at
+                WHERE l.expires_at <= now() OR l.owner = EXCLUDED.owner""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterMembership clusterMembership;
+
+    public boolean tryAcquire(String name, Duration duration) {
+        boolean acquired = jdbcTemplate.update(ACQUIRE_SQL, name, clusterMembership.getNodeId(), duration.toMillis()) == 1;
+        if (!acquired) {
+            log.debug("Bail {} détenu par une autre instance", name);
+        }
+        return acquired;
+    }
+}
@@ -0,0 +1,60 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OtpCode;
+import com.exemple.testotp.repository.OtpCodeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Component
+@ConditionalOnProperty(name = "otp.store.type", havingValue = "database", matchIfMissing = true)
+@RequiredArgsConstructor
+public class DatabaseOtpStore implements OtpStore {
+
+    private final OtpCodeRepository otpCodeRepository;
+    private final OtpCodeHasher otpCodeHasher;
+    private final OtpCodeCipher otpCodeCipher;
+
+    @Override
+    @Transactional
+    public void invalidate(String phoneNumber) {
+        otpCodeRepository.deleteUnusedByPhoneNumber(phoneNumber);
+    }
+
+    @Override
+    public Optional<OtpCode> resend(String phoneNumber, LocalDateTime now, LocalDateTime issuedAfter, int maxResends) {
+        return otpCodeRepository.resendOtp(phoneNumber, now, issuedAfter, maxResends);
+    }
+
+    @Override
+    @Transactional
+    public OtpCode save(OtpCode otp, String code) {
+        otp.setCodeHash(otpCodeHasher.hash(otp.getPhoneNumber(), code));
+        otp.setCodeCiphertext(otpCodeCipher.encrypt(otp.getPhoneNumber(), code));
+        return otpCodeRepository.save(otp);
+    }
+
+    @Override
+    public ConsumeResult consume(String phoneNumber, String code, LocalDateTime now) {
+        String codeHash = otpCodeHasher.hash(phoneNumber, code);
+        return ConsumeResult.valueOf(otpCodeRepository.consumeOtp(phoneNumber, codeHash, now));
+    }
+
+    @Override
+    public Optional<OtpCode> claimReminder(String phoneNumber, LocalDateTime now, LocalDateTime reminderTime,
+                                           LocalDateTime claimedAt) {
+        return otpCodeRepository.claimOtpForWhatsappReminder(phoneNumber, now, reminderTime, claimedAt);
+    }
+
+    @Override
+    public List<OtpCode> claimReminders(LocalDateTime now, LocalDateTime reminderTime, int shardIndex, int shardCount,
+                                        long afterId, int limit, LocalDateTime claimedAt) {
+        return otpCodeRepository.claimOtpsForWhatsappReminder(now, reminderTime, shardIndex, shardCount,
+                afterId, limit, claimedAt);
+    }
+}
@@ -0,0 +1,81 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.RegistrationSession;
+import com.exemple.testotp.repository.RegistrationSessionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Component
+@ConditionalOnProperty(name = "registration.session.mode", havingValue = "database", matchIfMissing = true)
+@RequiredArgsConstructor
+public class DatabaseRegistrationSessionStore implements RegistrationSessionStore {
+
+    private final RegistrationSessionRepository sessionRepository;
+
+    @Override
+    @Transactional
+    public RegistrationSession create(RegistrationSession session) {
+        session.setSessionId(UUID.randomUUID().toString());
+        return sessionRepository.save(session);
+    }
+
+    @Override
+    public Optional<RegistrationSession> find(String sessionId) {
+        return sessionRepository.findBySessionId(sessionId);
+    }
+
+    @Override
+    @Transactional
+    public Optional<RegistrationSession> markOtpVerified(String sessionId, LocalDateTime now) {
+        return sessionRepository.markOtpVerified(sessionId, now);
+    }
+
+    @Override
+    @Transactional
+    public Optional<RegistrationSession> claimCompletion(String sessionId, LocalDateTime now, LocalDateTime staleBefore) {
+        return sessionRepository.claimCompletion(sessionId, now, staleBefore);
+    }
+
+    @Override
+    @Transactional
+    public void recordKeycloakUser(RegistrationSession session, String keycloakUserId) {
+        sessionRepository.recordKeycloakUser(session.getSessionId(), keycloakUserId);
+    }
+
+    @Override
+    @Transactional
+    public boolean markCompleted(RegistrationSession session) {
+        return sessionRepository.markCompleted(session.getSessionId(),
+                RegistrationSession.CompletionStatus.PROCESSING, RegistrationSession.CompletionStatus.COMPLETED) == 1;
+    }
+
+    @Override
+    @Transactional
+    public void markCompletionFailed(RegistrationSession session, String error) {
+        sessionRepository.markCompletionFailed(session.getSessionId(),
+                RegistrationSession.CompletionStatus.PROCESSING, RegistrationSession.CompletionStatus.FAILED, error);
+    }
+
+    @Override
+    @Transactional
+    public int deleteExpiredBefore(LocalDateTime dateTime) {
+        return sessionRepository.deleteExpiredBefore(dateTime);
+    }
+
+    @Override
+    @Transactional
+    public int deleteCompleted() {
+        return sessionRepository.deleteCompleted();
+    }
+
+    @Override
+    public boolean storedInSessionTable() {
+        return true;
+    }
+}
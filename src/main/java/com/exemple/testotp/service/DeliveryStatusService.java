@@ -0,0 +1,155 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OtpCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Statuts de remise WhatsApp reçus par le callback Twilio, enregistrés sur {@code otp_codes}.
+ * <p>
+ * Les callbacks ne font qu'alimenter un tampon en mémoire, qui ne garde que le statut le plus avancé
+ * par message ; le tampon est écrit par lots toutes les {@code twilio.status.flush.interval.ms}.
+ * Un statut arrivé avant l'enregistrement du SID est retenté aux flushs suivants. Un échec de remise
+ * publie {@link WhatsappFailedEvent} : le SMS part sans attendre l'échéance du rappel. Un statut perdu
+ * (arrêt de l'instance) n'a pas d'autre effet que de laisser le rappel planifié partir à son heure.
+ */
+@Service
+@Slf4j
+public class DeliveryStatusService {
+
+    public record WhatsappFailedEvent(String phoneNumber) {
+    }
+
+    private record PendingStatus(OtpCode.WhatsappStatus status, int flushes) {
+    }
+
+    private static final int MAX_UNMATCHED_FLUSHES = 5;
+
+    // Ordre de progression des statuts, pour ne jamais revenir en arrière (callbacks non ordonnés)
+    private static final String STATUS_ORDER = Arrays.stream(OtpCode.WhatsappStatus.values())
+            .map(status -> "'" + status.name() + "'")
+            .collect(Collectors.joining(",", "ARRAY[", "]"));
+
+    private static final String UPDATE_STATUS_SQL = "UPDATE otp_codes SET whatsapp_status = ? WHERE whatsapp_message_sid = ? " +
+            "AND COALESCE(array_position(" + STATUS_ORDER + ", whatsapp_status), 0) < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, PendingStatus> pending = new ConcurrentHashMap<>();
+
+    public DeliveryStatusService(JdbcTemplate jdbcTemplate,
+                                 ApplicationEventPublisher eventPublisher,
+                                 MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Associe le message WhatsApp envoyé à l'OTP en cours du numéro ; un renvoi du code remplace le message précédent.
+     */
+    public void registerWhatsappMessage(String phoneNumber, String messageSid) {
+        jdbcTemplate.update("UPDATE otp_codes SET whatsapp_message_sid = ?, whatsapp_status = ? " +
+                        "WHERE phone_number = ? AND used = false",
+                messageSid, OtpCode.WhatsappStatus.QUEUED.name(), phoneNumber);
+    }
+
+    /**
+     * Met en tampon le statut reçu de Twilio ; les statuts sans intérêt pour l'OTP sont ignorés.
+     */
+    public void recordStatus(String messageSid, String twilioStatus) {
+        OtpCode.WhatsappStatus status = toWhatsappStatus(twilioStatus);
+        Counter.builder("twilio.status.callbacks")
+                .description("Callbacks de statut de remise reçus")
+                .tag("status", twilioStatus == null ? "unknown" : twilioStatus)
+                .register(meterRegistry)
+                .increment();
+        if (messageSid == null || status == null) {
+            return;
+        }
+        pending.merge(messageSid, new PendingStatus(status, 0),
+                (current, received) -> received.status().compareTo(current.status()) > 0 ? received : current);
+    }
+
+    @Scheduled(fixedDelayString = "${twilio.status.flush.interval.ms:200}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<String> sids = new ArrayList<>();
+        List<PendingStatus> statuses = new ArrayList<>();
+        for (String sid : List.copyOf(pending.keySet())) {
+            PendingStatus status = pending.remove(sid);
+            if (status != null) {
+                sids.add(sid);
+                statuses.add(status);
+            }
+        }
+
+        try {
+            List<Object[]> updates = new ArrayList<>();
+            for (int i = 0; i < sids.size(); i++) {
+                OtpCode.WhatsappStatus status = statuses.get(i).status();
+                updates.add(new Object[]{status.name(), sids.get(i), status.ordinal() + 1});
+            }
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_STATUS_SQL, updates);
+
+            for (int i = 0; i < sids.size(); i++) {
+                PendingStatus status = statuses.get(i);
+                if (updated[i] == 0) {
+                    requeueUnmatched(sids.get(i), status);
+                } else if (status.status() == OtpCode.WhatsappStatus.FAILED) {
+                    publishFailure(sids.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Erreur lors de l'enregistrement de {} statuts de remise WhatsApp", sids.size(), e);
+            for (int i = 0; i < sids.size(); i++) {
+                requeueUnmatched(sids.get(i), statuses.get(i));
+            }
+        }
+    }
+
+    private void requeueUnmatched(String sid, PendingStatus status) {
+        if (status.flushes() + 1 < MAX_UNMATCHED_FLUSHES) {
+            pending.merge(sid, new PendingStatus(status.status(), status.flushes() + 1),
+                    (current, retried) -> retried.status().compareTo(current.status()) > 0 ? retried : current);
+        }
+    }
+
+    private void publishFailure(String sid) {
+        List<String> phoneNumbers = jdbcTemplate.queryForList(
+                "SELECT phone_number FROM otp_codes WHERE whatsapp_message_sid = ? AND used = false", String.class, sid);
+        phoneNumbers.forEach(phoneNumber -> {
+            log.warn("Message WhatsApp {} non remis, envoi du code par SMS", sid);
+            eventPublisher.publishEvent(new WhatsappFailedEvent(phoneNumber));
+        });
+    }
+
+    private static OtpCode.WhatsappStatus toWhatsappStatus(String twilioStatus) {
+        if (twilioStatus == null) {
+            return null;
+        }
+        return switch (twilioStatus) {
+            case "accepted", "scheduled", "queued", "sending" -> OtpCode.WhatsappStatus.QUEUED;
+            case "sent" -> OtpCode.WhatsappStatus.SENT;
+            case "delivered" -> OtpCode.WhatsappStatus.DELIVERED;
+            case "read" -> OtpCode.WhatsappStatus.READ;
+            case "failed", "undelivered", "canceled" -> OtpCode.WhatsappStatus.FAILED;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,256 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OtpCode;
+import com.exemple.testotp.repository.OtpCodeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache mémoire des OTP en cours, indexé par numéro de téléphone, devant {@link OtpCodeRepository}.
+ * <p>
+ * PostgreSQL reste la source de vérité : l'insertion est faite dans la transaction de l'appelant,
+ * la consommation est écrite en différé par lots. Le cache et la file d'écriture ne changent qu'à l'issue
+ * de la transaction de l'appelant : un code consommé dans une transaction annulée redevient utilisable.
+ * Les rappels SMS sont réservés via le store, qui écrit d'abord les consommations en attente.
+ * Un verrou par segment (striping) sérialise les opérations d'un même numéro sans bloquer les autres.
+ * En cas d'absence du cache (redémarrage, cache plein), la lecture retombe sur la base. À réserver à une instance unique ou à un routage
+ * sticky par numéro : une autre instance ne voit pas les codes consommés ici avant le flush.
+ */
+@Component
+@ConditionalOnProperty(name = "otp.store.type", havingValue = "memory")
+@Slf4j
+public class InMemoryOtpStore implements OtpStore {
+
+    // consuming : code vérifié dans une transaction pas encore terminée, refusé aux autres requêtes
+    private record CachedOtp(Long id, String codeHash, LocalDateTime expiresAt, boolean consuming) {
+        boolean isExpired(LocalDateTime now) {
+            return !now.isBefore(expiresAt);
+        }
+
+        CachedOtp asConsuming() {
+            return new CachedOtp(id, codeHash, expiresAt, true);
+        }
+    }
+
+    private final OtpCodeRepository otpCodeRepository;
+    private final OtpCodeHasher otpCodeHasher;
+    private final OtpCodeCipher otpCodeCipher;
+    private final Map<String, CachedOtp> entries = new ConcurrentHashMap<>();
+    private final Queue<Long> pendingUsedIds = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock[] stripes;
+    private final int maxEntries;
+
+    public InMemoryOtpStore(OtpCodeRepository otpCodeRepository,
+                            OtpCodeHasher otpCodeHasher,
+                            OtpCodeCipher otpCodeCipher,
+                            @Value("${otp.store.memory.stripes:64}") int stripeCount,
+                            @Value("${otp.store.memory.max-entries:100000}") int maxEntries) {
+        this.otpCodeRepository = otpCodeRepository;
+        this.otpCodeHasher = otpCodeHasher;
+        this.otpCodeCipher = otpCodeCipher;
+        this.maxEntries = maxEntries;
+        // Nombre de segments arrondi à la puissance de 2 supérieure pour indexer par masque
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    @Transactional
+    public void invalidate(String phoneNumber) {
+        ReentrantLock lock = lockFor(phoneNumber);
+        lock.lock();
+        try {
+            entries.remove(phoneNumber);
+            otpCodeRepository.deleteUnusedByPhoneNumber(phoneNumber);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<OtpCode> resend(String phoneNumber, LocalDateTime now, LocalDateTime issuedAfter, int maxResends) {
+        ReentrantLock lock = lockFor(phoneNumber);
+        lock.lock();
+        try {
+            // Absent du cache (ou en cours de consommation), le code a pu être consommé ici sans être encore
+            // écrit en base : nouveau code
+            CachedOtp cached = entries.get(phoneNumber);
+            if (cached == null || cached.isExpired(now) || cached.consuming()) {
+                return Optional.empty();
+            }
+            return otpCodeRepository.resendOtp(phoneNumber, now, issuedAfter, maxResends)
+                    .filter(resent -> resent.getId().equals(cached.id()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @Transactional
+    public OtpCode save(OtpCode otp, String code) {
+        otp.setCodeHash(otpCodeHasher.hash(otp.getPhoneNumber(), code));
+        otp.setCodeCiphertext(otpCodeCipher.encrypt(otp.getPhoneNumber(), code));
+        OtpCode saved = otpCodeRepository.save(otp);
+        CachedOtp cached = new CachedOtp(saved.getId(), saved.getCodeHash(), saved.getExpiresAt(), false);
+
+        // Le code n'entre dans le cache qu'une fois la ligne validée en base
+        afterCommit(() -> withLock(saved.getPhoneNumber(), () -> put(saved.getPhoneNumber(), cached)));
+        return saved;
+    }
+
+    @Override
+    public ConsumeResult consume(String phoneNumber, String code, LocalDateTime now) {
+        ReentrantLock lock = lockFor(phoneNumber);
+        lock.lock();
+        try {
+            CachedOtp cached = entries.get(phoneNumber);
+            if (cached == null) {
+                cached = loadFromDatabase(phoneNumber, now);
+            }
+
+            if (cached == null || cached.isExpired(now)) {
+                entries.remove(phoneNumber);
+                return ConsumeResult.NOT_FOUND;
+            }
+            if (cached.consuming()) {
+                return ConsumeResult.NOT_FOUND;
+            }
+
+            if (!cached.codeHash().equals(otpCodeHasher.hash(phoneNumber, code))) {
+                return ConsumeResult.INCORRECT;
+            }
+
+            CachedOtp verified = cached;
+            CachedOtp consuming = cached.asConsuming();
+            entries.put(phoneNumber, consuming);
+            afterTransaction(
+                    () -> withLock(phoneNumber, () -> {
+                        entries.remove(phoneNumber, consuming);
+                        pendingUsedIds.add(verified.id());
+                    }),
+                    () -> withLock(phoneNumber, () -> entries.replace(phoneNumber, consuming, verified)));
+            return ConsumeResult.VERIFIED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Les codes consommés ici sont écrits avant la réservation : la requête de réservation les exclut
+    @Override
+    public Optional<OtpCode> claimReminder(String phoneNumber, LocalDateTime now, LocalDateTime reminderTime,
+                                           LocalDateTime claimedAt) {
+        flushUsedCodes();
+        return otpCodeRepository.claimOtpForWhatsappReminder(phoneNumber, now, reminderTime, claimedAt);
+    }
+
+    @Override
+    public List<OtpCode> claimReminders(LocalDateTime now, LocalDateTime reminderTime, int shardIndex, int shardCount,
+                                        long afterId, int limit, LocalDateTime claimedAt) {
+        flushUsedCodes();
+        return otpCodeRepository.claimOtpsForWhatsappReminder(now, reminderTime, shardIndex, shardCount,
+                afterId, limit, claimedAt);
+    }
+
+    @Scheduled(fixedDelayString = "${otp.store.memory.flush.interval.ms:500}")
+    public void flushUsedCodes() {
+        List<Long> ids = new ArrayList<>();
+        Long id;
+        while ((id = pendingUsedIds.poll()) != null) {
+            ids.add(id);
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        try {
+            otpCodeRepository.markUsed(ids);
+        } catch (Exception e) {
+            // Les identifiants sont remis en file pour le prochain flush
+            pendingUsedIds.addAll(ids);
+            log.error("Erreur lors de l'écriture différée de {} OTP consommés", ids.size(), e);
+        }
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void evictExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        entries.entrySet().removeIf(entry -> entry.getValue().isExpired(now));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushUsedCodes();
+    }
+
+    private CachedOtp loadFromDatabase(String phoneNumber, LocalDateTime now) {
+        Optional<OtpCode> otp = otpCodeRepository.findValidOtpByPhoneNumber(phoneNumber, now);
+        if (otp.isEmpty() || pendingUsedIds.contains(otp.get().getId())) {
+            return null;
+        }
+        CachedOtp cached = new CachedOtp(otp.get().getId(), otp.get().getCodeHash(), otp.get().getExpiresAt(), false);
+        put(phoneNumber, cached);
+        return cached;
+    }
+
+    private static void afterCommit(Runnable onCommit) {
+        afterTransaction(onCommit, () -> {
+        });
+    }
+
+    // Changement du cache appliqué à l'issue de la transaction de l'appelant, ou tout de suite hors transaction
+    private static void afterTransaction(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                (status == STATUS_COMMITTED ? onCommit : onRollback).run();
+            }
+        });
+    }
+
+    private void withLock(String phoneNumber, Runnable action) {
+        ReentrantLock lock = lockFor(phoneNumber);
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(String phoneNumber, CachedOtp cached) {
+        // Cache borné : au-delà de la limite, le numéro est servi par la base
+        if (entries.size() >= maxEntries && !entries.containsKey(phoneNumber)) {
+            return;
+        }
+        entries.put(phoneNumber, cached);
+    }
+
+    private ReentrantLock lockFor(String phoneNumber) {
+        int hash = phoneNumber.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+}
@@ -0,0 +1,62 @@
+package com.exemple.testotp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Limiteur partagé entre instances : l'instant théorique d'arrivée de chaque clé est stocké dans
+ * {@code rate_limit_buckets} et mis à jour par un UPSERT conditionnel en un aller-retour.
+ * Les instances doivent avoir des horloges synchronisées (NTP).
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limit.backend", havingValue = "jdbc")
+@RequiredArgsConstructor
+@Slf4j
+public class JdbcRateLimiter implements RateLimiter {
+
+    // La mise à jour n'a lieu que si la rafale n'est pas épuisée ; sinon aucune ligne n'est retournée
+    private static final String ACQUIRE_SQL = """
+            INSERT INTO rate_limit_buckets AS b (bucket_key, tat) VALUES (?, ?)
+            ON CONFLICT (bucket_key) DO UPDATE SET tat = GREATEST(b.tat, ?) + ?
+                WHERE GREATEST(b.tat, ?) + ? - ? <= ?
+            RETURNING tat""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public long tryAcquire(String key, Policy policy) {
+        long now = System.currentTimeMillis();
+        long interval = policy.emissionIntervalMillis();
+        long burst = policy.burstMillis();
+
+        List<Long> acquired = jdbcTemplate.queryForList(ACQUIRE_SQL, Long.class,
+                key, now + interval, now, interval, now, interval, now, burst);
+        if (!acquired.isEmpty()) {
+            return 0;
+        }
+
+        return Math.max(1, check(key, policy));
+    }
+
+    @Override
+    public long check(String key, Policy policy) {
+        List<Long> current = jdbcTemplate.queryForList(
+                "SELECT tat FROM rate_limit_buckets WHERE bucket_key = ?", Long.class, key);
+        return current.isEmpty() ? 0 : policy.retryAfterMillis(current.get(0), System.currentTimeMillis());
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void deleteIdleBuckets() {
+        try {
+            jdbcTemplate.update("DELETE FROM rate_limit_buckets WHERE tat <= ?", System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("Erreur lors du nettoyage des compteurs de limitation", e);
+        }
+    }
+}
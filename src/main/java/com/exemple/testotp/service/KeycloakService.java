@@ -1,6 +1,10 @@
 package com.exemple.testotp.service;
 
+import com.exemple.testotp.dto.UserRegistrationDto;
 import com.exemple.testotp.exception.KeycloakException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import jakarta.ws.rs.core.Response;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -8,11 +12,16 @@ import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.resource.RealmResource;
 import org.keycloak.admin.client.resource.UsersResource;
 import org.keycloak.representations.idm.CredentialRepresentation;
+import org.keycloak.representations.idm.PartialImportRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -20,10 +29,12 @@ import java.util.Collections;
 public class KeycloakService {
 
     private final Keycloak keycloak;
+    private final ObjectMapper objectMapper;
 
     @Value("${keycloak.realm}")
     private String realm;
 
+    @Timed(value = "keycloak.requests", extraTags = {"operation", "createUser"}, histogram = true)
     public String createUser(String firstName, String lastName, String email, String phoneNumber, String password) {
         try {
             RealmResource realmResource = keycloak.realm(realm);
@@ -41,20 +52,26 @@ public class KeycloakService {
             // Ajouter le numéro de téléphone comme attribut
             user.setAttributes(Collections.singletonMap("phoneNumber", Collections.singletonList(phoneNumber)));
 
-            // Créer l'utilisateur
-            Response response = usersResource.create(user);
+            // Le mot de passe est transmis avec l'utilisateur : un seul appel HTTP
+            user.setCredentials(Collections.singletonList(passwordCredential(password)));
 
-            if (response.getStatus() == 201) {
-                // Récupérer l'ID de l'utilisateur créé
-                String userId = extractUserIdFromResponse(response);
+            // Créer l'utilisateur (la réponse est fermée pour rendre la connexion au pool)
+            try (Response response = usersResource.create(user)) {
+                if (response.getStatus() == 201) {
+                    // Récupérer l'ID de l'utilisateur créé
+                    String userId = extractUserIdFromResponse(response);
 
-                // Définir le mot de passe
-                setUserPassword(usersResource, userId, password);
-
-                log.info("Utilisateur créé avec succès dans Keycloak: {}", email);
-                return userId;
-            } else {
-                throw new KeycloakException("Échec de la création de l'utilisateur. Code: " + response.getStatus());
+                    log.info("Utilisateur créé avec succès dans Keycloak: {}", email);
+                    return userId;
+                } else if (response.getStatus() == 409) {
+                    // Tentative précédente créée mais non enregistrée en base : on reprend cet utilisateur
+                    // avec le mot de passe de cette demande, sinon le compte garderait l'ancien
+                    String userId = findExistingUserId(usersResource, email, phoneNumber);
+                    usersResource.get(userId).resetPassword(passwordCredential(password));
+                    return userId;
+                } else {
+                    throw new KeycloakException("Échec de la création de l'utilisateur. Code: " + response.getStatus());
+                }
             }
         } catch (Exception e) {
             log.error("Erreur lors de la création de l'utilisateur dans Keycloak: {}", e.getMessage(), e);
@@ -62,17 +79,90 @@ public class KeycloakService {
         }
     }
 
+    /**
+     * Crée les utilisateurs en un seul appel à l'API d'import partiel, sans mot de passe.
+     * Un utilisateur déjà présent est repris s'il a été créé pour le même numéro (import relancé).
+     *
+     * @return l'identifiant Keycloak de chaque utilisateur, par email en minuscules ; les emails absents sont en conflit
+     */
+    @Timed(value = "keycloak.requests", extraTags = {"operation", "partialImport"}, histogram = true)
+    public Map<String, String> importUsers(List<UserRegistrationDto> users) {
+        Map<String, UserRegistrationDto> byUsername = new HashMap<>();
+        PartialImportRepresentation partialImport = new PartialImportRepresentation();
+        partialImport.setIfResourceExists(PartialImportRepresentation.Policy.SKIP.name());
+        partialImport.setUsers(users.stream()
+                .map(dto -> {
+                    byUsername.put(dto.getEmail().toLowerCase(Locale.ROOT), dto);
+                    UserRepresentation user = new UserRepresentation();
+                    user.setUsername(dto.getEmail());
+                    user.setEmail(dto.getEmail());
+                    user.setFirstName(dto.getFirstName());
+                    user.setLastName(dto.getLastName());
+                    user.setEnabled(true);
+                    user.setAttributes(Collections.singletonMap("phoneNumber", Collections.singletonList(dto.getPhoneNumber())));
+                    return user;
+                })
+                .toList());
+
+        RealmResource realmResource = keycloak.realm(realm);
+        JsonNode results;
+        try (Response response = realmResource.partialImport(partialImport)) {
+            if (response.getStatus() != 200) {
+                throw new KeycloakException("Échec de l'import partiel des utilisateurs. Code: " + response.getStatus());
+            }
+            results = objectMapper.readTree(response.readEntity(String.class)).path("results");
+        } catch (KeycloakException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new KeycloakException("Erreur lors de l'import partiel des utilisateurs", e);
+        }
+
+        Map<String, String> userIds = new HashMap<>();
+        for (JsonNode result : results) {
+            String username = result.path("resourceName").asText().toLowerCase(Locale.ROOT);
+            UserRegistrationDto dto = byUsername.get(username);
+            if (dto == null || !"USER".equals(result.path("resourceType").asText())) {
+                continue;
+            }
+            if ("ADDED".equals(result.path("action").asText())) {
+                userIds.put(username, result.path("id").asText());
+                continue;
+            }
+            try {
+                userIds.put(username, findExistingUserId(realmResource.users(), dto.getEmail(), dto.getPhoneNumber()));
+            } catch (KeycloakException e) {
+                log.warn("Utilisateur ignoré à l'import: {}", e.getMessage());
+            }
+        }
+        log.info("{} utilisateurs importés dans Keycloak sur {}", userIds.size(), users.size());
+        return userIds;
+    }
+
+    private String findExistingUserId(UsersResource usersResource, String email, String phoneNumber) {
+        UserRepresentation existing = usersResource.search(email, null, null, null, 0, 1, null, false, true)
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new KeycloakException("Conflit lors de la création de l'utilisateur: " + email));
+
+        // Seul un utilisateur créé pour ce numéro peut être repris
+        List<String> phoneNumbers = existing.getAttributes() == null ? null : existing.getAttributes().get("phoneNumber");
+        if (phoneNumbers == null || !phoneNumbers.contains(phoneNumber)) {
+            throw new KeycloakException("Un autre utilisateur Keycloak existe déjà avec cet email");
+        }
+        log.info("Utilisateur déjà présent dans Keycloak, repris: {}", email);
+        return existing.getId();
+    }
+
     private String extractUserIdFromResponse(Response response) {
         String location = response.getHeaderString("Location");
         return location.substring(location.lastIndexOf('/') + 1);
     }
 
-    private void setUserPassword(UsersResource usersResource, String userId, String password) {
+    private CredentialRepresentation passwordCredential(String password) {
         CredentialRepresentation credential = new CredentialRepresentation();
         credential.setType(CredentialRepresentation.PASSWORD);
         credential.setValue(password);
         credential.setTemporary(false);
-
-        usersResource.get(userId).resetPassword(credential);
+        return credential;
     }
-}
\ No newline at end of file
+}
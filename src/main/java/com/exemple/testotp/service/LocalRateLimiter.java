@@ -0,0 +1,55 @@
+package com.exemple.testotp.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limiteur en mémoire : un seul {@code long} (instant théorique d'arrivée) par clé, mis à jour par CAS
+ * sans verrou. Les limites s'appliquent par instance.
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limit.backend", havingValue = "local", matchIfMissing = true)
+public class LocalRateLimiter implements RateLimiter {
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    @Override
+    public long tryAcquire(String key, Policy policy) {
+        long interval = policy.emissionIntervalMillis();
+        long burst = policy.burstMillis();
+
+        while (true) {
+            AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong());
+            long now = System.currentTimeMillis();
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + interval;
+            if (next - now > burst) {
+                return next - now - burst;
+            }
+            // Seau retiré par l'éviction entre la lecture et le CAS : le jeton est repris sur le nouveau seau
+            if (bucket.compareAndSet(tat, next) && buckets.get(key) == bucket) {
+                return 0;
+            }
+        }
+    }
+
+    @Override
+    public long check(String key, Policy policy) {
+        AtomicLong bucket = buckets.get(key);
+        return bucket == null ? 0 : policy.retryAfterMillis(bucket.get(), System.currentTimeMillis());
+    }
+
+    // Un seau revenu à pleine capacité n'a plus d'état utile ; retiré sous le verrou de sa clé
+    @Scheduled(fixedRate = 60000)
+    public void evictIdleBuckets() {
+        long now = System.currentTimeMillis();
+        for (String key : buckets.keySet()) {
+            buckets.computeIfPresent(key, (k, bucket) -> bucket.get() <= now ? null : bucket);
+        }
+    }
+}
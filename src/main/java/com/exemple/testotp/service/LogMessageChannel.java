@@ -0,0 +1,32 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OutboundMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.UUID;
+
+/**
+ * Canal local ({@code messaging.provider=log}) : le message est tracé dans les logs au lieu d'être
+ * envoyé. Pour le développement et les tests, sans compte Twilio. Le texte contient le code OTP :
+ * seuls le destinataire et la longueur du message sont écrits.
+ */
+@Slf4j
+public class LogMessageChannel implements MessageChannel {
+
+    private final OutboundMessage.Channel type;
+
+    public LogMessageChannel(OutboundMessage.Channel type) {
+        this.type = type;
+    }
+
+    @Override
+    public OutboundMessage.Channel type() {
+        return type;
+    }
+
+    @Override
+    public String send(String recipient, String body) {
+        log.info("[{}] Message pour {} ({} caractères)", type, recipient, body.length());
+        return "log-" + UUID.randomUUID();
+    }
+}
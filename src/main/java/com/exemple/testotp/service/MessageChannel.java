@@ -0,0 +1,19 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OutboundMessage;
+
+/**
+ * Canal d'envoi d'un message au destinataire, utilisé par {@link MessageChannelRouter}.
+ * Le fournisseur est choisi via la propriété {@code messaging.provider} (twilio | log).
+ */
+public interface MessageChannel {
+
+    OutboundMessage.Channel type();
+
+    /**
+     * Envoie le message et retourne l'identifiant attribué par le fournisseur.
+     *
+     * @throws com.exemple.testotp.exception.SmsException si le fournisseur refuse ou ne répond pas
+     */
+    String send(String recipient, String body);
+}
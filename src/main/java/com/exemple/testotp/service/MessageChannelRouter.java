@@ -0,0 +1,190 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OutboundMessage;
+import com.exemple.testotp.exception.SmsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Choisit le canal de chaque envoi d'après la santé mesurée des canaux.
+ * <p>
+ * Chaque canal garde ses derniers envois (durée, succès) ; sur la fenêtre
+ * {@code messaging.routing.window.seconds}, il est dégradé si son taux d'erreur dépasse
+ * {@code messaging.routing.max-error-rate} ou sa latence moyenne {@code messaging.routing.max-latency.ms}.
+ * Un message destiné à un canal dégradé part directement par le canal sain le plus rapide
+ * ({@link ReroutedEvent}) au lieu d'attendre la relance. Sans envoi récent, un canal redevient sain
+ * à l'expiration de la fenêtre : le trafic suivant sert de sonde.
+ */
+@Service
+@Slf4j
+public class MessageChannelRouter {
+
+    public record Delivery(OutboundMessage.Channel channel, String providerMessageId) {
+    }
+
+    public record ReroutedEvent(String recipient, OutboundMessage.Channel requested, OutboundMessage.Channel used) {
+    }
+
+    private static final int SAMPLE_CAPACITY = 128;
+
+    private final Map<OutboundMessage.Channel, MessageChannel> channels = new EnumMap<>(OutboundMessage.Channel.class);
+    private final Map<OutboundMessage.Channel, ChannelHealth> health = new EnumMap<>(OutboundMessage.Channel.class);
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final long windowMillis;
+
+    @Value("${messaging.routing.min-samples:5}")
+    private int minSamples;
+
+    @Value("${messaging.routing.max-error-rate:0.5}")
+    private double maxErrorRate;
+
+    @Value("${messaging.routing.max-latency.ms:5000}")
+    private long maxLatencyMillis;
+
+    public MessageChannelRouter(List<MessageChannel> messageChannels,
+                                ApplicationEventPublisher eventPublisher,
+                                MeterRegistry meterRegistry,
+                                @Value("${messaging.routing.window.seconds:60}") long windowSeconds) {
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        for (MessageChannel channel : messageChannels) {
+            channels.put(channel.type(), channel);
+            health.put(channel.type(), new ChannelHealth());
+            Gauge.builder("messaging.channel.healthy", channel.type(), type -> isHealthy(type, System.currentTimeMillis()) ? 1 : 0)
+                    .description("Canal jugé sain par le routage (1) ou dégradé (0)")
+                    .tag("channel", channel.type().name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Envoie le message par {@code preferred}, ou par un autre canal si celui-ci est dégradé.
+     */
+    public Delivery send(OutboundMessage.Channel preferred, String recipient, String body) {
+        OutboundMessage.Channel target = select(preferred);
+        String providerMessageId = deliver(target, recipient, body);
+
+        if (target != preferred) {
+            Counter.builder("messaging.rerouted")
+                    .description("Messages envoyés par un autre canal que celui demandé")
+                    .tag("from", preferred.name().toLowerCase())
+                    .tag("to", target.name().toLowerCase())
+                    .register(meterRegistry)
+                    .increment();
+            eventPublisher.publishEvent(new ReroutedEvent(recipient, preferred, target));
+        }
+        return new Delivery(target, providerMessageId);
+    }
+
+    /**
+     * Envoie le message par {@code channel} uniquement, même dégradé : pour un texte qui n'a de sens
+     * que sur ce canal. L'envoi compte dans la santé du canal comme les autres.
+     */
+    public Delivery sendWithoutRerouting(OutboundMessage.Channel channel, String recipient, String body) {
+        if (!channels.containsKey(channel)) {
+            throw new SmsException("Aucun canal d'envoi disponible pour " + channel);
+        }
+        return new Delivery(channel, deliver(channel, recipient, body));
+    }
+
+    private String deliver(OutboundMessage.Channel target, String recipient, String body) {
+        ChannelHealth channelHealth = health.get(target);
+        long start = System.nanoTime();
+        String providerMessageId;
+        try {
+            providerMessageId = channels.get(target).send(recipient, body);
+        } catch (RuntimeException e) {
+            channelHealth.record(System.currentTimeMillis(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), false);
+            throw e;
+        }
+        channelHealth.record(System.currentTimeMillis(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), true);
+        return providerMessageId;
+    }
+
+    private OutboundMessage.Channel select(OutboundMessage.Channel preferred) {
+        long now = System.currentTimeMillis();
+        if (channels.containsKey(preferred) && isHealthy(preferred, now)) {
+            return preferred;
+        }
+        return channels.keySet().stream()
+                .filter(type -> type != preferred && isHealthy(type, now))
+                .min(Comparator.comparingDouble(type -> health.get(type).averageLatency(now, windowMillis)))
+                .map(type -> {
+                    log.warn("Canal {} dégradé, envoi par {}", preferred, type);
+                    return type;
+                })
+                .orElseGet(() -> {
+                    if (!channels.containsKey(preferred)) {
+                        throw new SmsException("Aucun canal d'envoi disponible pour " + preferred);
+                    }
+                    // Tous les canaux sont dégradés : le canal demandé reste le meilleur choix
+                    return preferred;
+                });
+    }
+
+    private boolean isHealthy(OutboundMessage.Channel type, long now) {
+        ChannelHealth.Snapshot snapshot = health.get(type).snapshot(now, windowMillis);
+        if (snapshot.samples() < minSamples) {
+            return true;
+        }
+        return (double) snapshot.errors() / snapshot.samples() <= maxErrorRate
+                && snapshot.averageLatencyMillis() <= maxLatencyMillis;
+    }
+
+    /**
+     * Derniers envois d'un canal, dans un tampon circulaire de {@value #SAMPLE_CAPACITY} entrées.
+     */
+    private static final class ChannelHealth {
+
+        record Snapshot(int samples, int errors, double averageLatencyMillis) {
+        }
+
+        private final long[] timestamps = new long[SAMPLE_CAPACITY];
+        private final long[] latencies = new long[SAMPLE_CAPACITY];
+        private final boolean[] successes = new boolean[SAMPLE_CAPACITY];
+        private int next;
+        private int size;
+
+        synchronized void record(long timestamp, long latencyMillis, boolean success) {
+            timestamps[next] = timestamp;
+            latencies[next] = latencyMillis;
+            successes[next] = success;
+            next = (next + 1) % SAMPLE_CAPACITY;
+            size = Math.min(size + 1, SAMPLE_CAPACITY);
+        }
+
+        synchronized Snapshot snapshot(long now, long windowMillis) {
+            int samples = 0;
+            int errors = 0;
+            long totalLatency = 0;
+            for (int i = 0; i < size; i++) {
+                if (now - timestamps[i] > windowMillis) {
+                    continue;
+                }
+                samples++;
+                totalLatency += latencies[i];
+                if (!successes[i]) {
+                    errors++;
+                }
+            }
+            return new Snapshot(samples, errors, samples == 0 ? 0 : (double) totalLatency / samples);
+        }
+
+        double averageLatency(long now, long windowMillis) {
+            return snapshot(now, windowMillis).averageLatencyMillis();
+        }
+    }
+}
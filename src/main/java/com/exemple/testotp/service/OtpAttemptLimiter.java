@@ -0,0 +1,175 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.exception.OtpAttemptsExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Échecs de vérification OTP par session et par numéro, en mémoire : un seul {@code long} par clé
+ * (fin de la fenêtre en secondes, nombre d'échecs), mis à jour par CAS sans verrou.
+ * <p>
+ * Une clé ayant atteint {@code otp.verify.max-attempts} échecs est refusée jusqu'à la fin de sa fenêtre
+ * ({@code otp.verify.lockout.minutes}, comptée depuis le premier échec), sans accès à la base.
+ * Chaque échec rattache la session à son numéro : le blocage du numéro s'applique ensuite à la session dès
+ * {@link #checkAllowed(String)}, avant toute transaction. Une session sans échec n'est pas encore rattachée :
+ * son numéro est contrôlé dès que la session est lue, avant la consommation du code.
+ * Les compteurs sont propres à chaque instance.
+ */
+@Component
+@Slf4j
+public class OtpAttemptLimiter {
+
+    public enum Scope {
+        SESSION,
+        PHONE
+    }
+
+    private static final int COUNT_BITS = 16;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final Map<String, AtomicLong> attempts = new ConcurrentHashMap<>();
+    private final Map<String, String> sessionPhones = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final long lockoutSeconds;
+    private final LongSupplier clock;
+
+    @Autowired
+    public OtpAttemptLimiter(MeterRegistry meterRegistry,
+                             @Value("${otp.verify.attempts.enabled:true}") boolean enabled,
+                             @Value("${otp.verify.max-attempts:5}") int maxAttempts,
+                             @Value("${otp.verify.lockout.minutes:15}") long lockoutMinutes) {
+        this(meterRegistry, enabled, maxAttempts, lockoutMinutes, System::currentTimeMillis);
+    }
+
+    // Horloge en millisecondes substituable dans les tests
+    OtpAttemptLimiter(MeterRegistry meterRegistry, boolean enabled, int maxAttempts, long lockoutMinutes,
+                      LongSupplier clock) {
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.maxAttempts = (int) Math.min(maxAttempts, COUNT_MASK);
+        this.lockoutSeconds = TimeUnit.MINUTES.toSeconds(lockoutMinutes);
+    }
+
+    /**
+     * Refuse la vérification si la session, ou le numéro auquel un échec précédent l'a rattachée,
+     * a épuisé ses tentatives.
+     */
+    public void checkAllowed(String sessionId) {
+        checkAllowed(Scope.SESSION, sessionId);
+        String phoneNumber = sessionPhones.get(sessionId);
+        if (phoneNumber != null) {
+            checkAllowed(Scope.PHONE, phoneNumber);
+        }
+    }
+
+    /**
+     * Compte un échec pour la session et pour son numéro ; {@code true} si c'est celui qui épuise
+     * les tentatives du numéro.
+     */
+    public boolean recordFailure(String sessionId, String phoneNumber) {
+        if (!enabled) {
+            return false;
+        }
+        sessionPhones.put(sessionId, phoneNumber);
+        recordFailure(Scope.SESSION, sessionId);
+        return recordFailure(Scope.PHONE, phoneNumber);
+    }
+
+    public void reset(String sessionId, String phoneNumber) {
+        reset(Scope.SESSION, sessionId);
+        reset(Scope.PHONE, phoneNumber);
+        sessionPhones.remove(sessionId);
+    }
+
+    /**
+     * Refuse la vérification si la clé a épuisé ses tentatives.
+     */
+    public void checkAllowed(Scope scope, String key) {
+        if (!enabled) {
+            return;
+        }
+        AtomicLong state = attempts.get(key(scope, key));
+        if (state == null) {
+            return;
+        }
+        long now = nowSeconds();
+        long current = state.get();
+        if (windowEnd(current) > now && count(current) >= maxAttempts) {
+            meterRegistry.counter("otp.verify.locked", "scope", scope.name().toLowerCase()).increment();
+            throw new OtpAttemptsExceededException("Trop de tentatives, réessayez plus tard", windowEnd(current) - now);
+        }
+    }
+
+    /**
+     * Compte un échec ; {@code true} si c'est celui qui épuise les tentatives de la clé.
+     */
+    public boolean recordFailure(Scope scope, String key) {
+        if (!enabled) {
+            return false;
+        }
+        String stateKey = key(scope, key);
+        while (true) {
+            AtomicLong state = attempts.computeIfAbsent(stateKey, k -> new AtomicLong());
+            long now = nowSeconds();
+            long current = state.get();
+            // Fenêtre écoulée : le compteur repart de zéro
+            long windowEnd = windowEnd(current) > now ? windowEnd(current) : now + lockoutSeconds;
+            int count = windowEnd(current) > now ? count(current) : 0;
+            int next = Math.min(count + 1, (int) COUNT_MASK);
+            // État retiré par l'éviction entre la lecture et le CAS : l'échec est recompté sur le nouvel état
+            if (state.compareAndSet(current, (windowEnd << COUNT_BITS) | next) && attempts.get(stateKey) == state) {
+                if (next == maxAttempts) {
+                    log.warn("Tentatives OTP épuisées ({}) pour {}", scope, key);
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    public void reset(Scope scope, String key) {
+        if (enabled) {
+            attempts.remove(key(scope, key));
+        }
+    }
+
+    // Une fenêtre écoulée n'a plus d'état utile ; retiré sous le verrou de sa clé
+    @Scheduled(fixedRate = 60000)
+    public void evictExpired() {
+        long now = nowSeconds();
+        for (String key : attempts.keySet()) {
+            attempts.computeIfPresent(key, (k, state) -> windowEnd(state.get()) <= now ? null : state);
+        }
+        sessionPhones.entrySet().removeIf(link -> !attempts.containsKey(key(Scope.SESSION, link.getKey()))
+                && !attempts.containsKey(key(Scope.PHONE, link.getValue())));
+    }
+
+    private static String key(Scope scope, String key) {
+        return scope == Scope.PHONE ? "phone:" + UserExistenceIndex.normalizePhoneNumber(key) : "session:" + key;
+    }
+
+    private static long windowEnd(long state) {
+        return state >>> COUNT_BITS;
+    }
+
+    private static int count(long state) {
+        return (int) (state & COUNT_MASK);
+    }
+
+    private long nowSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(clock.getAsLong());
+    }
+}
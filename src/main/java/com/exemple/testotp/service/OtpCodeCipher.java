@@ -0,0 +1,70 @@
+package com.exemple.testotp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Chiffrement AES-GCM des codes OTP avec la clé {@code otp.code.encryption.secret}, distincte de celle des empreintes.
+ * Seul le chiffré est stocké ({@code otp_codes.code_ciphertext}, {@code outbound_messages.body}) : le rappel SMS,
+ * l'envoi de secours, le renvoi du code et l'outbox le déchiffrent au moment de l'envoi.
+ * Le numéro est lié au chiffré (données associées).
+ */
+@Component
+public class OtpCodeCipher {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int KEY_BYTES = 32;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKeySpec key;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public OtpCodeCipher(@Value("${otp.code.encryption.secret:}") String secret) {
+        byte[] bytes = secret.isBlank() ? new byte[0] : Base64.getDecoder().decode(secret);
+        if (bytes.length < KEY_BYTES) {
+            throw new IllegalStateException(
+                    "otp.code.encryption.secret doit contenir au moins " + KEY_BYTES + " octets encodés en base64");
+        }
+        this.key = new SecretKeySpec(Arrays.copyOf(bytes, KEY_BYTES), "AES");
+    }
+
+    public String encrypt(String phoneNumber, String code) {
+        byte[] iv = new byte[IV_BYTES];
+        secureRandom.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(phoneNumber.getBytes(StandardCharsets.UTF_8));
+            byte[] encrypted = cipher.doFinal(code.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(IV_BYTES + encrypted.length)
+                    .put(iv)
+                    .put(encrypted)
+                    .array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Chiffrement du code OTP impossible", e);
+        }
+    }
+
+    public String decrypt(String phoneNumber, String ciphertext) {
+        byte[] bytes = Base64.getDecoder().decode(ciphertext);
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, bytes, 0, IV_BYTES));
+            cipher.updateAAD(phoneNumber.getBytes(StandardCharsets.UTF_8));
+            return new String(cipher.doFinal(bytes, IV_BYTES, bytes.length - IV_BYTES), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Code OTP chiffré illisible", e);
+        }
+    }
+}
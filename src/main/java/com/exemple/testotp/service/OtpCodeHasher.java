@@ -0,0 +1,47 @@
+package com.exemple.testotp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * Empreinte des codes OTP : HMAC-SHA256 du numéro et du code, avec la clé {@code otp.hash.secret}.
+ * La vérification compare les empreintes en base, sans relire le code.
+ */
+@Component
+public class OtpCodeHasher {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final ThreadLocal<Mac> mac;
+
+    public OtpCodeHasher(@Value("${otp.hash.secret:}") String secret) {
+        byte[] key = secret.isBlank() ? new byte[0] : Base64.getDecoder().decode(secret);
+        if (key.length < MIN_KEY_BYTES) {
+            throw new IllegalStateException(
+                    "otp.hash.secret doit contenir au moins " + MIN_KEY_BYTES + " octets encodés en base64");
+        }
+        SecretKeySpec spec = new SecretKeySpec(key, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(spec);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC indisponible", e);
+            }
+        });
+    }
+
+    public String hash(String phoneNumber, String code) {
+        byte[] input = (phoneNumber + ":" + code).getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(mac.get().doFinal(input));
+    }
+}
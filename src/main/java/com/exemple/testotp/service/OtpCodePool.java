@@ -0,0 +1,135 @@
+package com.exemple.testotp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Réserve de codes OTP générés à l'avance, dans un tampon circulaire borné et sans verrou.
+ * <p>
+ * Un seul producteur (la tâche {@link #refill()}, toutes les {@code otp.pool.refill.interval.ms}) remplit
+ * le tampon par lots avec son propre générateur ; les requêtes ne font que retirer un code déjà construit.
+ * Réserve vide : le code est généré directement, sur l'un des générateurs répartis par thread (striping),
+ * sans contention sur un {@link SecureRandom} unique.
+ */
+@Component
+@Slf4j
+public class OtpCodePool {
+
+    // Rejet des octets >= 250 : chaque chiffre reste uniformément distribué
+    private static final int DIGIT_BOUND = 250;
+
+    private final int codeLength;
+    private final boolean enabled;
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final SecureRandom refillRandom = new SecureRandom();
+    private final SecureRandom[] stripes;
+    private final Counter refilled;
+    private final Counter fallbacks;
+
+    public OtpCodePool(MeterRegistry meterRegistry,
+                       @Value("${otp.length}") int codeLength,
+                       @Value("${otp.pool.enabled:true}") boolean enabled,
+                       @Value("${otp.pool.capacity:1024}") int capacity) {
+        this.codeLength = codeLength;
+        this.enabled = enabled;
+        // Capacité arrondie à la puissance de 2 supérieure pour indexer par masque
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        this.stripes = new SecureRandom[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new SecureRandom();
+        }
+
+        Gauge.builder("otp.pool.size", this, OtpCodePool::size)
+                .description("Codes OTP disponibles dans la réserve")
+                .register(meterRegistry);
+        this.refilled = Counter.builder("otp.pool.refilled")
+                .description("Codes OTP générés par le remplissage de la réserve")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("otp.pool.fallback")
+                .description("Codes OTP générés directement, réserve vide")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Code suivant de la réserve, ou généré directement si elle est vide.
+     */
+    public String nextCode() {
+        while (true) {
+            long position = head.get();
+            if (position >= tail.get()) {
+                fallbacks.increment();
+                return generate();
+            }
+            String code = slots.get((int) position & mask);
+            // Le producteur ne réécrit une case qu'une fois sa position dépassée : si le CAS réussit, le code lu est le bon
+            if (head.compareAndSet(position, position + 1)) {
+                return code;
+            }
+        }
+    }
+
+    /**
+     * Complète la réserve ; appelé par un seul thread à la fois (tâche planifiée à délai fixe).
+     */
+    @Scheduled(fixedDelayString = "${otp.pool.refill.interval.ms:100}")
+    public void refill() {
+        if (!enabled) {
+            return;
+        }
+        long position = tail.get();
+        long free = slots.length() - (position - head.get());
+        if (free <= 0) {
+            return;
+        }
+        byte[] scratch = new byte[codeLength * 2];
+        for (long i = 0; i < free; i++) {
+            slots.set((int) (position + i) & mask, generate(refillRandom, scratch));
+        }
+        // Publication du lot : les cases écrites sont visibles des consommateurs avant la nouvelle position
+        tail.set(position + free);
+        refilled.increment(free);
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * Génération directe, sans passer par la réserve.
+     */
+    public String generate() {
+        SecureRandom random = stripes[(int) Thread.currentThread().threadId() & (stripes.length - 1)];
+        return generate(random, new byte[codeLength * 2]);
+    }
+
+    private String generate(SecureRandom random, byte[] scratch) {
+        char[] digits = new char[codeLength];
+        int count = 0;
+        while (count < codeLength) {
+            random.nextBytes(scratch);
+            for (int i = 0; i < scratch.length && count < codeLength; i++) {
+                int value = scratch[i] & 0xFF;
+                if (value < DIGIT_BOUND) {
+                    digits[count++] = (char) ('0' + value % 10);
+                }
+            }
+        }
+        return new String(digits);
+    }
+}
@@ -0,0 +1,68 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Limite les envois d'OTP par numéro de téléphone et par adresse IP cliente, avant toute écriture
+ * en base ou tout appel Twilio.
+ */
+@Service
+@Slf4j
+public class OtpSendRateLimiter {
+
+    private static final String IP_MESSAGE = "Trop de demandes depuis cette adresse, réessayez plus tard";
+    private static final String PHONE_MESSAGE = "Trop de codes demandés pour ce numéro, réessayez plus tard";
+
+    private final RateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final RateLimiter.Policy phonePolicy;
+    private final RateLimiter.Policy ipPolicy;
+
+    public OtpSendRateLimiter(RateLimiter rateLimiter,
+                              MeterRegistry meterRegistry,
+                              @Value("${rate-limit.enabled:true}") boolean enabled,
+                              @Value("${rate-limit.phone.capacity:3}") int phoneCapacity,
+                              @Value("${rate-limit.phone.period.seconds:600}") long phonePeriodSeconds,
+                              @Value("${rate-limit.ip.capacity:20}") int ipCapacity,
+                              @Value("${rate-limit.ip.period.seconds:600}") long ipPeriodSeconds) {
+        this.rateLimiter = rateLimiter;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.phonePolicy = new RateLimiter.Policy("phone", phoneCapacity, Duration.ofSeconds(phonePeriodSeconds));
+        this.ipPolicy = new RateLimiter.Policy("ip", ipCapacity, Duration.ofSeconds(ipPeriodSeconds));
+    }
+
+    public void checkOtpSend(String phoneNumber, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        String ipKey = clientIp == null ? null : "ip:" + clientIp;
+        String phoneKey = "phone:" + UserExistenceIndex.normalizePhoneNumber(phoneNumber);
+
+        // Les deux limites sont vérifiées avant de consommer un jeton : un refus sur l'une ne coûte rien à l'autre
+        if (ipKey != null) {
+            reject(ipKey, ipPolicy, rateLimiter.check(ipKey, ipPolicy), IP_MESSAGE);
+        }
+        reject(phoneKey, phonePolicy, rateLimiter.check(phoneKey, phonePolicy), PHONE_MESSAGE);
+
+        if (ipKey != null) {
+            reject(ipKey, ipPolicy, rateLimiter.tryAcquire(ipKey, ipPolicy), IP_MESSAGE);
+        }
+        reject(phoneKey, phonePolicy, rateLimiter.tryAcquire(phoneKey, phonePolicy), PHONE_MESSAGE);
+    }
+
+    private void reject(String key, RateLimiter.Policy policy, long retryAfterMillis, String message) {
+        if (retryAfterMillis > 0) {
+            meterRegistry.counter("otp.rate.limited", "policy", policy.name()).increment();
+            log.warn("Limite d'envoi OTP atteinte pour {}", key);
+            throw new RateLimitExceededException(message, (retryAfterMillis + 999) / 1000);
+        }
+    }
+}
@@ -2,160 +2,160 @@ package com.exemple.testotp.service;
 
 
 import com.exemple.testotp.entity.OtpCode;
+import com.exemple.testotp.entity.OutboundMessage;
 import com.exemple.testotp.exception.InvalidOtpException;
-import com.exemple.testotp.exception.SmsException;
 import com.exemple.testotp.repository.OtpCodeRepository;
-import com.twilio.rest.api.v2010.account.Message;
-import com.twilio.type.PhoneNumber;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.security.SecureRandom;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class OtpService {
 
-    private final OtpCodeRepository otpCodeRepository;
-    private final SecureRandom secureRandom = new SecureRandom();
+    /**
+     * OTP envoyé par WhatsApp : le SMS de rappel est dû {@code otp.sms.reminder.delay.minutes} plus tard.
+     */
+    public record OtpIssuedEvent(String phoneNumber, LocalDateTime whatsappSentAt) {
+    }
+
+    public record OtpVerifiedEvent(String phoneNumber) {
+    }
 
-    @Value("${twilio.phone.number}")
-    private String twilioPhoneNumber;
+    private final OtpCodeRepository otpCodeRepository;
+    private final OtpStore otpStore;
+    private final OutboxService outboxService;
+    private final MessageChannelRouter channelRouter;
+    private final RegistrationMetrics registrationMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OtpCodePool otpCodePool;
+    private final OtpCodeCipher otpCodeCipher;
 
     @Value("${otp.expiration.minutes}")
     private int otpExpirationMinutes;
 
-    @Value("${otp.length}")
-    private int otpLength;
+    @Value("${otp.resend.coalesce.enabled:true}")
+    private boolean resendCoalesceEnabled;
+
+    @Value("${otp.resend.window.minutes:10}")
+    private int resendWindowMinutes;
 
-    @Value("${twilio.whatsapp.sandbox.number}")
-    private String twilioWhatsappNumber;
+    @Value("${otp.resend.max-count:3}")
+    private int resendMaxCount;
 
     @Value("${twilio.whatsapp.sandbox.enabled:true}")
     private boolean whatsappSandboxEnabled;
 
-    @Value("${otp.sms.reminder.delay.minutes:5}")
-    private int smsReminderDelayMinutes;
-
+    /**
+     * Envoie un code au numéro. Un code encore valide, émis depuis moins de {@code otp.resend.window.minutes}
+     * et renvoyé moins de {@code otp.resend.max-count} fois, est renvoyé tel quel plutôt que remplacé.
+     */
     @Transactional
     public void generateAndSendOtp(String phoneNumber) {
+        if (resendCoalesceEnabled && resendExistingOtp(phoneNumber)) {
+            return;
+        }
+
         // Supprimer les anciens codes OTP non utilisés
-        otpCodeRepository.deleteByPhoneNumberAndUsed(phoneNumber, false);
+        otpStore.invalidate(phoneNumber);
 
-        // Générer un nouveau code OTP
-        String otpCode = generateOtpCode();
+        // Prendre un code pré-généré dans la réserve
+        String otpCode = otpCodePool.nextCode();
 
         // Créer l'entité OTP
         OtpCode otp = new OtpCode();
         otp.setPhoneNumber(phoneNumber);
-        otp.setCode(otpCode);
         otp.setExpiresAt(LocalDateTime.now().plusMinutes(otpExpirationMinutes));
         otp.setUsed(false);
         otp.setWhatsappSentAt(LocalDateTime.now());
 
         // Sauvegarder en base
-        otpCodeRepository.save(otp);
+        otpStore.save(otp, otpCode);
 
-        // Envoyer le code via WhatsApp
-        sendWhatsapp(phoneNumber, otpCode);
+        // Mettre le message WhatsApp en file d'envoi : il part après le commit,
+        // l'appel Twilio ne bloque plus la requête ni la connexion
+        outboxService.enqueue(OutboundMessage.Channel.WHATSAPP, phoneNumber, buildWhatsappMessage(otpCode));
+        eventPublisher.publishEvent(new OtpIssuedEvent(phoneNumber, otp.getWhatsappSentAt()));
 
-        log.info("OTP généré et envoyé par WhatsApp pour le numéro: {}", phoneNumber);
+        registrationMetrics.recordOtpOutcome(RegistrationMetrics.OtpOutcome.SENT);
+        log.info("OTP généré et mis en file d'envoi WhatsApp pour le numéro: {}", phoneNumber);
     }
 
-    @Transactional
-    public boolean verifyOtp(String phoneNumber, String otpCode) {
-        Optional<OtpCode> otpOptional = otpCodeRepository.findValidOtpByPhoneNumber(phoneNumber, LocalDateTime.now());
-
-        if (otpOptional.isEmpty()) {
-            throw new InvalidOtpException("Code OTP invalide ou expiré");
-        }
-
-        OtpCode otp = otpOptional.get();
-
-        if (!otp.getCode().equals(otpCode)) {
-            throw new InvalidOtpException("Code OTP incorrect");
-        }
+    private boolean resendExistingOtp(String phoneNumber) {
+        LocalDateTime now = LocalDateTime.now();
+        return otpStore.resend(phoneNumber, now, now.minusMinutes(resendWindowMinutes), resendMaxCount)
+                .map(otp -> {
+                    outboxService.enqueue(OutboundMessage.Channel.WHATSAPP, phoneNumber, buildWhatsappMessage(decryptCode(otp)));
+                    eventPublisher.publishEvent(new OtpIssuedEvent(phoneNumber, otp.getWhatsappSentAt()));
+
+                    registrationMetrics.recordOtpOutcome(RegistrationMetrics.OtpOutcome.RESENT);
+                    log.info("OTP en cours renvoyé ({}e renvoi) pour le numéro: {}", otp.getResendCount(), phoneNumber);
+                    return true;
+                })
+                .orElse(false);
+    }
 
-        if (otp.isExpired()) {
-            throw new InvalidOtpException("Code OTP expiré");
+    public boolean verifyOtp(String phoneNumber, String otpCode) {
+        switch (otpStore.consume(phoneNumber, otpCode, LocalDateTime.now())) {
+            case NOT_FOUND -> {
+                registrationMetrics.recordOtpOutcome(RegistrationMetrics.OtpOutcome.EXPIRED);
+                throw new InvalidOtpException("Code OTP invalide ou expiré");
+            }
+            case INCORRECT -> {
+                registrationMetrics.recordOtpOutcome(RegistrationMetrics.OtpOutcome.INCORRECT);
+                throw new InvalidOtpException("Code OTP incorrect");
+            }
+            case VERIFIED -> {
+                registrationMetrics.recordOtpOutcome(RegistrationMetrics.OtpOutcome.VERIFIED);
+                eventPublisher.publishEvent(new OtpVerifiedEvent(phoneNumber));
+                log.info("OTP vérifié avec succès pour le numéro: {}", phoneNumber);
+            }
         }
-
-        // Marquer le code comme utilisé
-        otp.setUsed(true);
-        otpCodeRepository.save(otp);
-
-        log.info("OTP vérifié avec succès pour le numéro: {}", phoneNumber);
         return true;
     }
 
-    private String generateOtpCode() {
-        StringBuilder otp = new StringBuilder();
-        for (int i = 0; i < otpLength; i++) {
-            otp.append(secureRandom.nextInt(10));
-        }
-        return otp.toString();
+    /**
+     * Tentatives épuisées pour le numéro : le code en cours est supprimé, un nouveau code devra être demandé.
+     */
+    @Transactional
+    public void revokeOtp(String phoneNumber) {
+        otpStore.invalidate(phoneNumber);
+        log.warn("Code OTP supprimé après épuisement des tentatives pour le numéro: {}", phoneNumber);
     }
 
-    private void sendWhatsapp(String phoneNumber, String otpCode) {
-        try {
-            String messageBody = String.format("Votre code de vérification est: %s. Il expire dans %d minutes.",
-                    otpCode, otpExpirationMinutes);
-            String to = "whatsapp:" + phoneNumber;
-            String from = "whatsapp:" + twilioWhatsappNumber;
-            Message message = Message.creator(
-                    new PhoneNumber(to),
-                    new PhoneNumber(from),
-                    messageBody
-            ).create();
-            log.info("WhatsApp envoyé avec succès. SID: {}", message.getSid());
-        } catch (Exception e) {
-            log.error("Erreur lors de l'envoi du WhatsApp: {}", e.getMessage(), e);
-            throw new SmsException("Impossible d'envoyer le message WhatsApp", e);
-        }
+    private String buildWhatsappMessage(String otpCode) {
+        return String.format("Votre code de vérification est: %s. Il expire dans %d minutes.",
+                otpCode, otpExpirationMinutes);
     }
 
     @Transactional
     public void cleanupExpiredOtps() {
-        otpCodeRepository.deleteByExpiresAtBefore(LocalDateTime.now());
-        log.info("Nettoyage des codes OTP expirés terminé");
+        int deleted = otpCodeRepository.deleteExpiredBefore(LocalDateTime.now());
+        log.info("Nettoyage des codes OTP expirés terminé ({} supprimés)", deleted);
     }
 
-    public void sendReminderSms(String phoneNumber, String otpCode) {
-        try {
-            String messageBody = "Vérifiez WhatsApp, le code de vérification a déjà été envoyé. Code: " + otpCode;
-            Message message = Message.creator(
-                    new PhoneNumber(phoneNumber),
-                    new PhoneNumber(twilioPhoneNumber),
-                    messageBody
-            ).create();
-            log.info("SMS de rappel envoyé avec succès. SID: {}", message.getSid());
-        } catch (Exception e) {
-            log.error("Erreur lors de l'envoi du SMS de rappel: {}", e.getMessage(), e);
-            throw new SmsException("Impossible d'envoyer le SMS de rappel", e);
-        }
+    public void sendReminderSms(OtpCode otp) {
+        String messageBody = "Vérifiez WhatsApp, le code de vérification a déjà été envoyé. Code: " + decryptCode(otp);
+        // Le texte renvoie vers WhatsApp : il ne doit jamais partir par WhatsApp
+        channelRouter.sendWithoutRerouting(OutboundMessage.Channel.SMS, otp.getPhoneNumber(), messageBody);
     }
 
-    @Transactional
-    public void sendWhatsappReminderIfNotVerified() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime reminderTime = now.minusMinutes(smsReminderDelayMinutes);
-        log.info("[DIAG] Début de la vérification des OTP WhatsApp à relancer (heure: {}, délai: {} min)", now, smsReminderDelayMinutes);
-        List<OtpCode> otps = otpCodeRepository.findOtpForWhatsappReminder(now, reminderTime);
-        log.info("[DIAG] Nombre d'OTP candidats à la relance SMS: {}", otps.size());
-        for (OtpCode otp : otps) {
-            log.info("[DIAG] OTP à relancer: id={}, phone={}, code={}, whatsappSentAt={}, smsReminderSentAt={}, used={}, expiresAt={}",
-                otp.getId(), otp.getPhoneNumber(), otp.getCode(), otp.getWhatsappSentAt(), otp.getSmsReminderSentAt(), otp.isUsed(), otp.getExpiresAt());
-            sendReminderSms(otp.getPhoneNumber(), otp.getCode());
-            otp.setSmsReminderSentAt(LocalDateTime.now());
-            otpCodeRepository.save(otp);
-            log.info("SMS de rappel envoyé pour le numéro: {} (OTP: {})", otp.getPhoneNumber(), otp.getCode());
-        }
+    /**
+     * Le message WhatsApp n'a pas pu être remis : le code est envoyé par SMS.
+     */
+    public void sendFallbackSms(OtpCode otp) {
+        channelRouter.sendWithoutRerouting(OutboundMessage.Channel.SMS, otp.getPhoneNumber(),
+                buildWhatsappMessage(decryptCode(otp)));
+    }
+
+    // Le code n'est conservé que chiffré : il est déchiffré au moment de l'envoi
+    private String decryptCode(OtpCode otp) {
+        return otpCodeCipher.decrypt(otp.getPhoneNumber(), otp.getCodeCiphertext());
     }
 }
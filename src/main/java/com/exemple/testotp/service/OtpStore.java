@@ -0,0 +1,53 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OtpCode;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stockage des codes OTP utilisé par {@link OtpService}.
+ * L'implémentation est choisie via la propriété {@code otp.store.type} (database | memory).
+ */
+public interface OtpStore {
+
+    enum ConsumeResult {
+        VERIFIED,
+        NOT_FOUND,
+        INCORRECT
+    }
+
+    /**
+     * Supprime les codes non utilisés du numéro avant l'émission d'un nouveau code.
+     */
+    void invalidate(String phoneNumber);
+
+    /**
+     * Renvoi du code en cours du numéro, s'il a été émis après {@code issuedAfter} et renvoyé moins de
+     * {@code maxResends} fois : seule sa date d'envoi est mise à jour. Vide si un nouveau code doit être émis.
+     */
+    Optional<OtpCode> resend(String phoneNumber, LocalDateTime now, LocalDateTime issuedAfter, int maxResends);
+
+    /**
+     * Enregistre un nouveau code dans la transaction de l'appelant : seuls son empreinte et son chiffré sont conservés.
+     */
+    OtpCode save(OtpCode otp, String code);
+
+    /**
+     * Vérifie le code du numéro et le marque comme utilisé s'il correspond.
+     */
+    ConsumeResult consume(String phoneNumber, String code, LocalDateTime now);
+
+    /**
+     * Réserve le rappel SMS échu du numéro en le marquant envoyé à {@code claimedAt}, transaction validée au retour.
+     */
+    Optional<OtpCode> claimReminder(String phoneNumber, LocalDateTime now, LocalDateTime reminderTime,
+                                    LocalDateTime claimedAt);
+
+    /**
+     * Réserve une page de rappels SMS échus de la partition, après {@code afterId}, comme {@link #claimReminder}.
+     */
+    List<OtpCode> claimReminders(LocalDateTime now, LocalDateTime reminderTime, int shardIndex, int shardCount,
+                                 long afterId, int limit, LocalDateTime claimedAt);
+}
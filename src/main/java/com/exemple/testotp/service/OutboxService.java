@@ -0,0 +1,130 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OutboundMessage;
+import com.exemple.testotp.repository.OutboundMessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboundMessageRepository outboundMessageRepository;
+    private final OtpCodeCipher otpCodeCipher;
+
+    @Value("${outbox.lease.seconds:60}")
+    private int leaseSeconds;
+
+    @Value("${outbox.max.attempts:5}")
+    private int maxAttempts;
+
+    @Value("${outbox.backoff.initial.seconds:5}")
+    private long initialBackoffSeconds;
+
+    @Value("${outbox.backoff.max.seconds:300}")
+    private long maxBackoffSeconds;
+
+    @Value("${outbox.retention.hours:24}")
+    private int retentionHours;
+
+    /**
+     * Enregistre un message à envoyer dans la transaction de l'appelant :
+     * il n'est visible par les workers qu'une fois cette transaction validée.
+     * Le texte, qui contient le code OTP, n'est stocké que chiffré.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OutboundMessage enqueue(OutboundMessage.Channel channel, String recipient, String body) {
+        OutboundMessage message = new OutboundMessage();
+        message.setChannel(channel);
+        message.setRecipient(recipient);
+        message.setBody(otpCodeCipher.encrypt(recipient, body));
+        message.setStatus(OutboundMessage.Status.PENDING);
+        message.setAttempts(0);
+        message.setNextAttemptAt(LocalDateTime.now());
+        return outboundMessageRepository.save(message);
+    }
+
+    /**
+     * Réserve un lot de messages à envoyer. Le verrou SKIP LOCKED permet à plusieurs
+     * workers (ou instances) de réserver des lots disjoints sans s'attendre.
+     */
+    @Transactional
+    public List<OutboundMessage> claimBatch(int batchSize) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboundMessage> batch = outboundMessageRepository.findClaimable(now, batchSize);
+        if (!batch.isEmpty()) {
+            outboundMessageRepository.markSending(
+                    batch.stream().map(OutboundMessage::getId).toList(),
+                    OutboundMessage.Status.SENDING,
+                    now.plusSeconds(leaseSeconds)
+            );
+        }
+        return batch;
+    }
+
+    /**
+     * Texte du message, déchiffré au moment de l'envoi.
+     */
+    public String readBody(OutboundMessage message) {
+        return otpCodeCipher.decrypt(message.getRecipient(), message.getBody());
+    }
+
+    @Transactional
+    public void markSent(Long messageId, MessageChannelRouter.Delivery delivery) {
+        // Le canal enregistré est celui réellement utilisé, qui peut différer du canal demandé
+        outboundMessageRepository.markSent(messageId, OutboundMessage.Status.SENT,
+                LocalDateTime.now(), delivery.channel(), delivery.providerMessageId());
+    }
+
+    @Transactional
+    public void markAttemptFailed(OutboundMessage message, Exception error) {
+        int attempts = message.getAttempts() + 1;
+        String lastError = truncate(error.getMessage());
+
+        if (attempts >= maxAttempts) {
+            outboundMessageRepository.markFailed(message.getId(), OutboundMessage.Status.FAILED, lastError);
+            log.error("Abandon de l'envoi du message {} vers {} après {} tentatives",
+                    message.getId(), message.getRecipient(), attempts);
+            return;
+        }
+
+        LocalDateTime nextAttemptAt = LocalDateTime.now().plusSeconds(backoffSeconds(attempts));
+        outboundMessageRepository.markAttemptFailed(message.getId(), OutboundMessage.Status.PENDING,
+                nextAttemptAt, lastError);
+        log.warn("Échec de l'envoi du message {} (tentative {}), nouvel essai à {}",
+                message.getId(), attempts, nextAttemptAt);
+    }
+
+    @Transactional
+    public void cleanupFinishedMessages() {
+        int deleted = outboundMessageRepository.deleteFinishedBefore(
+                EnumSet.of(OutboundMessage.Status.SENT, OutboundMessage.Status.FAILED),
+                LocalDateTime.now().minusHours(retentionHours)
+        );
+        log.info("Nettoyage des messages sortants terminé ({} supprimés)", deleted);
+    }
+
+    private long backoffSeconds(int attempts) {
+        // Backoff exponentiel : initial, 2x, 4x... plafonné
+        long delay = initialBackoffSeconds << Math.min(attempts - 1, 20);
+        return Math.min(delay, maxBackoffSeconds);
+    }
+
+    private String truncate(String value) {
+        if (value == null || value.length() <= MAX_ERROR_LENGTH) {
+            return value;
+        }
+        return value.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,145 @@
+package com.exemple.testotp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Gestion des partitions journalières (par {@code expires_at}) de otp_codes et registration_sessions
+ * lorsque {@code db.partitioning.enabled=true} (schéma : {@code db/migration/partitioned}).
+ * La rétention devient une suppression de partitions, sans DELETE ligne à ligne ni VACUUM.
+ * <p>
+ * Les lignes tombées dans la partition par défaut (aucune partition pour leur jour au moment de l'insertion)
+ * bloqueraient la création de la partition du jour : elles y sont déplacées lors de sa création.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionMaintenanceService {
+
+    private static final List<String> PARTITIONED_TABLES = List.of("otp_codes", "registration_sessions");
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${db.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${db.partitioning.premake.days:3}")
+    private int premakeDays;
+
+    @Value("${db.partitioning.retention.days:1}")
+    private int retentionDays;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureUpcomingPartitions() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        for (String table : PARTITIONED_TABLES) {
+            for (int i = 0; i <= premakeDays; i++) {
+                createPartition(table, today.plusDays(i));
+            }
+        }
+    }
+
+    /**
+     * Supprime les partitions dont tous les enregistrements ont expiré depuis plus de la rétention.
+     */
+    public void dropExpiredPartitions() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        for (String table : PARTITIONED_TABLES) {
+            int deleted = jdbcTemplate.update("DELETE FROM " + defaultPartition(table) + " WHERE expires_at < ?",
+                    cutoff.atStartOfDay());
+            if (deleted > 0) {
+                log.info("{} ligne(s) expirée(s) supprimée(s) de {}", deleted, defaultPartition(table));
+            }
+            for (String partition : listPartitions(table)) {
+                LocalDate day = partitionDay(table, partition);
+                // Une partition couvre [day, day + 1) : supprimable si day + 1 <= cutoff
+                if (day != null && !day.plusDays(1).isAfter(cutoff)) {
+                    jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+                    log.info("Partition supprimée: {}", partition);
+                }
+            }
+        }
+    }
+
+    private void createPartition(String table, LocalDate day) {
+        String partition = table + "_p" + day.format(SUFFIX_FORMAT);
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition);
+        if (Boolean.TRUE.equals(exists)) {
+            return;
+        }
+
+        String range = " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')";
+        String inRange = " WHERE expires_at >= '" + day + "' AND expires_at < '" + day.plusDays(1) + "'";
+        Boolean pendingRows = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + defaultPartition(table) + inRange + ")", Boolean.class);
+        if (!Boolean.TRUE.equals(pendingRows)) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + table + range);
+            return;
+        }
+
+        // Lignes du jour dans la partition par défaut : table créée à part, lignes déplacées, puis rattachée,
+        // en une transaction (en cas d'échec, les lignes restent dans la partition par défaut)
+        try {
+            Integer moved = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE " + table + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+                int count = jdbcTemplate.update("WITH moved AS (DELETE FROM " + defaultPartition(table) + inRange
+                        + " RETURNING *) INSERT INTO " + partition + " SELECT * FROM moved");
+                jdbcTemplate.execute("ALTER TABLE " + table + " ATTACH PARTITION " + partition + range);
+                return count;
+            });
+            log.warn("Partition {} créée avec {} ligne(s) déplacée(s) depuis {}", partition, moved, defaultPartition(table));
+        } catch (Exception e) {
+            log.error("Création de la partition {} impossible, les lignes du {} restent dans {}",
+                    partition, day, defaultPartition(table), e);
+        }
+    }
+
+    private static String defaultPartition(String table) {
+        return table + "_default";
+    }
+
+    private List<String> listPartitions(String table) {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = ?",
+                String.class, table);
+    }
+
+    private LocalDate partitionDay(String table, String partition) {
+        String prefix = table + "_p";
+        if (!partition.startsWith(prefix)) {
+            // Partition par défaut ou créée hors de ce service
+            return null;
+        }
+        try {
+            return LocalDate.parse(partition.substring(prefix.length()), SUFFIX_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.exemple.testotp.service;
+
+import java.time.Duration;
+
+/**
+ * Limiteur de débit par clé (algorithme GCRA, équivalent à un seau à jetons), utilisé par
+ * {@link OtpSendRateLimiter}. Le backend est choisi via {@code rate-limit.backend} :
+ * {@code local} (mémoire, par instance) ou {@code jdbc} (état partagé dans PostgreSQL).
+ */
+public interface RateLimiter {
+
+    /**
+     * {@code capacity} requêtes autorisées en rafale, rechargées intégralement sur {@code period}.
+     */
+    record Policy(String name, int capacity, Duration period) {
+
+        /**
+         * Intervalle entre deux jetons.
+         */
+        public long emissionIntervalMillis() {
+            return Math.max(1, period.toMillis() / capacity);
+        }
+
+        /**
+         * Avance maximale autorisée sur le calendrier théorique (taille de la rafale).
+         */
+        public long burstMillis() {
+            return emissionIntervalMillis() * capacity;
+        }
+
+        /**
+         * Délai avant le prochain jeton pour l'instant théorique d'arrivée {@code tat}, 0 si un jeton est disponible.
+         */
+        public long retryAfterMillis(long tat, long now) {
+            return Math.max(0, Math.max(tat, now) + emissionIntervalMillis() - now - burstMillis());
+        }
+    }
+
+    /**
+     * Consomme un jeton pour la clé.
+     *
+     * @return 0 si la requête est autorisée, sinon le délai en millisecondes avant le prochain jeton
+     */
+    long tryAcquire(String key, Policy policy);
+
+    /**
+     * Comme {@link #tryAcquire}, sans consommer de jeton.
+     */
+    long check(String key, Policy policy);
+}
@@ -0,0 +1,78 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.repository.RegistrationSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Métriques métier du parcours d'inscription, exportées par Actuator ({@code /actuator/prometheus}).
+ */
+@Component
+@Slf4j
+public class RegistrationMetrics {
+
+    public enum OtpOutcome {
+        SENT,
+        RESENT,
+        VERIFIED,
+        INCORRECT,
+        EXPIRED
+    }
+
+    private final RegistrationSessionRepository sessionRepository;
+    private final Map<OtpOutcome, Counter> otpOutcomes = new EnumMap<>(OtpOutcome.class);
+    private final Timer passwordHashTimer;
+    private final AtomicLong activeSessions = new AtomicLong();
+    private final AtomicLong verifiedSessions = new AtomicLong();
+
+    public RegistrationMetrics(MeterRegistry meterRegistry, RegistrationSessionRepository sessionRepository) {
+        this.sessionRepository = sessionRepository;
+        for (OtpOutcome outcome : OtpOutcome.values()) {
+            otpOutcomes.put(outcome, Counter.builder("otp.outcomes")
+                    .description("Codes OTP émis et résultats des vérifications")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.passwordHashTimer = Timer.builder("registration.password.hash")
+                .description("Hachage BCrypt du mot de passe")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("registration.sessions.active", activeSessions, AtomicLong::get)
+                .description("Sessions d'inscription en cours")
+                .register(meterRegistry);
+        Gauge.builder("registration.sessions.otp.verified", verifiedSessions, AtomicLong::get)
+                .description("Sessions en cours dont l'OTP est vérifié")
+                .register(meterRegistry);
+    }
+
+    public void recordOtpOutcome(OtpOutcome outcome) {
+        otpOutcomes.get(outcome).increment();
+    }
+
+    public <T> T timePasswordHash(Supplier<T> hashing) {
+        return passwordHashTimer.record(hashing);
+    }
+
+    // Les jauges sont rafraîchies périodiquement plutôt qu'à chaque scrape
+    @Scheduled(fixedRate = 60000)
+    public void refreshSessionGauges() {
+        try {
+            RegistrationSessionRepository.SessionCounts counts = sessionRepository.countOpenSessions(LocalDateTime.now());
+            activeSessions.set(counts.getActive());
+            verifiedSessions.set(counts.getOtpVerified() == null ? 0 : counts.getOtpVerified());
+        } catch (Exception e) {
+            log.warn("Impossible de rafraîchir les jauges de sessions: {}", e.getMessage());
+        }
+    }
+}
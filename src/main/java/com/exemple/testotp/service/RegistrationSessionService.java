@@ -1,30 +1,31 @@
 package com.exemple.testotp.service;
 
 import com.exemple.testotp.entity.RegistrationSession;
+import com.exemple.testotp.exception.InvalidSessionStateException;
 import com.exemple.testotp.exception.SessionExpiredException;
 import com.exemple.testotp.exception.SessionNotFoundException;
-import com.exemple.testotp.repository.RegistrationSessionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class RegistrationSessionService {
 
-    private final RegistrationSessionRepository sessionRepository;
+    private final RegistrationSessionStore sessionStore;
     private static final int SESSION_EXPIRATION_HOURS = 2;
 
-    @Transactional
+    @Value("${registration.complete.lease.seconds:300}")
+    private long completionLeaseSeconds;
+
     public RegistrationSession createSession(String firstName, String lastName, String email, String phoneNumber) {
         RegistrationSession session = new RegistrationSession();
-        session.setSessionId(UUID.randomUUID().toString());
         session.setFirstName(firstName);
         session.setLastName(lastName);
         session.setEmail(email);
@@ -33,47 +34,106 @@ public class RegistrationSessionService {
         session.setCompleted(false);
         session.setExpiresAt(LocalDateTime.now().plusHours(SESSION_EXPIRATION_HOURS));
 
-        RegistrationSession savedSession = sessionRepository.save(session);
-        log.info("Session d'inscription créée: {}", savedSession.getSessionId());
+        RegistrationSession savedSession = sessionStore.create(session);
+        log.info("Session d'inscription créée pour: {}", savedSession.getEmail());
         return savedSession;
     }
 
-    public RegistrationSession getSession(String sessionId) {
-        Optional<RegistrationSession> sessionOptional = sessionRepository.findBySessionId(sessionId);
+    /**
+     * Session pour consultation de l'état, y compris expirée ou terminée. Lue sur le primaire (transaction
+     * en écriture, donc jamais routée vers un réplica) : le client relit l'état qu'il vient de faire évoluer.
+     */
+    @Transactional
+    public RegistrationSession findSession(String sessionId) {
+        return sessionStore.find(sessionId)
+                .orElseThrow(() -> new SessionNotFoundException("Session non trouvée"));
+    }
 
-        if (sessionOptional.isEmpty()) {
-            throw new SessionNotFoundException("Session non trouvée");
+    /**
+     * Résultat de {@link #claimCompletion(String)} : la session réservée, ou son état actuel si la
+     * finalisation est déjà en cours ou terminée.
+     */
+    public record CompletionClaim(RegistrationSession session, boolean claimed) {
+    }
+
+    /**
+     * Transition STARTED → OTP_VERIFIED ; l'identifiant de la session retournée est celui à renvoyer au client.
+     * La session n'est relue que pour expliquer un refus.
+     */
+    @Transactional
+    public RegistrationSession markOtpVerified(String sessionId) {
+        RegistrationSession verified = sessionStore.markOtpVerified(sessionId, LocalDateTime.now())
+                .orElseThrow(() -> rejectedTransition(sessionId, RegistrationSession.State.OTP_VERIFIED));
+        log.info("OTP marqué comme vérifié pour la session de: {}", verified.getEmail());
+        return verified;
+    }
+
+    /**
+     * Réserve la finalisation de la session pour l'appelant. Si elle est déjà en cours ou terminée
+     * (requête rejouée), retourne l'état actuel de la session sans la réserver.
+     */
+    @Transactional
+    public CompletionClaim claimCompletion(String sessionId) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<RegistrationSession> claimed = sessionStore.claimCompletion(sessionId, now, now.minusSeconds(completionLeaseSeconds));
+        if (claimed.isPresent()) {
+            return new CompletionClaim(claimed.get(), true);
         }
 
-        RegistrationSession session = sessionOptional.get();
+        // Lue dans la même transaction, donc sur le primaire : l'état expliquant le refus est à jour
+        RegistrationSession session = findSession(sessionId);
+        if (session.getState() == RegistrationSession.State.COMPLETED
+                || session.getCompletionStatus() == RegistrationSession.CompletionStatus.PROCESSING) {
+            return new CompletionClaim(session, false);
+        }
+        throw rejectedTransition(session, RegistrationSession.State.COMPLETED);
+    }
 
-        if (session.isExpired()) {
-            throw new SessionExpiredException("Session expirée");
+    public void recordKeycloakUser(RegistrationSession session, String keycloakUserId) {
+        sessionStore.recordKeycloakUser(session, keycloakUserId);
+    }
+
+    public void markCompleted(RegistrationSession session) {
+        if (!sessionStore.markCompleted(session)) {
+            throw new InvalidSessionStateException("Finalisation de la session reprise par une autre requête");
         }
+        log.info("Session marquée comme terminée pour: {}", session.getEmail());
+    }
 
-        return session;
+    public void markCompletionFailed(RegistrationSession session, String error) {
+        sessionStore.markCompletionFailed(session, error);
+        log.warn("Échec de la finalisation pour: {}: {}", session.getEmail(), error);
     }
 
-    @Transactional
-    public void markOtpVerified(String sessionId) {
-        RegistrationSession session = getSession(sessionId);
-        session.setOtpVerified(true);
-        sessionRepository.save(session);
-        log.info("OTP marqué comme vérifié pour la session: {}", sessionId);
+    private RuntimeException rejectedTransition(String sessionId, RegistrationSession.State target) {
+        return rejectedTransition(findSession(sessionId), target);
     }
 
-    @Transactional
-    public void markCompleted(String sessionId) {
-        RegistrationSession session = getSession(sessionId);
-        session.setCompleted(true);
-        sessionRepository.save(session);
-        log.info("Session marquée comme terminée: {}", sessionId);
+    private RuntimeException rejectedTransition(RegistrationSession session, RegistrationSession.State target) {
+        if (session.isExpired()) {
+            return new SessionExpiredException("Session expirée");
+        }
+        return switch (session.getState()) {
+            case STARTED -> new InvalidSessionStateException(
+                    "Le numéro de téléphone doit être vérifié avant de définir le mot de passe");
+            case OTP_VERIFIED -> target == RegistrationSession.State.OTP_VERIFIED
+                    ? new InvalidSessionStateException("Numéro de téléphone déjà vérifié")
+                    : new InvalidSessionStateException("Finalisation de la session déjà en cours");
+            case COMPLETED -> new InvalidSessionStateException("Inscription déjà terminée");
+        };
     }
 
-    @Transactional
     public void cleanupExpiredSessions() {
-        sessionRepository.deleteByExpiresAtBefore(LocalDateTime.now());
-        sessionRepository.deleteByCompleted(true);
-        log.info("Nettoyage des sessions expirées terminé");
+        int expired = sessionStore.deleteExpiredBefore(LocalDateTime.now());
+        log.info("Nettoyage des sessions expirées terminé ({} supprimées)", expired);
+    }
+
+    public boolean isStoredInSessionTable() {
+        return sessionStore.storedInSessionTable();
+    }
+
+    public void cleanupCompletedSessions() {
+        int completed = sessionStore.deleteCompleted();
+        log.info("Nettoyage des sessions terminées ({} supprimées)", completed);
     }
 }
@@ -0,0 +1,56 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.RegistrationSession;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Stockage des sessions d'inscription utilisé par {@link RegistrationSessionService}.
+ * L'implémentation est choisie via la propriété {@code registration.session.mode} (database | token).
+ */
+public interface RegistrationSessionStore {
+
+    /**
+     * Enregistre la nouvelle session et lui attribue son identifiant.
+     */
+    RegistrationSession create(RegistrationSession session);
+
+    /**
+     * Session et état de sa finalisation, expirée ou non.
+     */
+    Optional<RegistrationSession> find(String sessionId);
+
+    /**
+     * Transition STARTED → OTP_VERIFIED, sans lecture préalable de la session. Retourne la session vérifiée,
+     * dont l'identifiant peut changer et doit être renvoyé au client ; vide si la session n'existe pas,
+     * a expiré ou n'est plus dans l'état STARTED.
+     */
+    Optional<RegistrationSession> markOtpVerified(String sessionId, LocalDateTime now);
+
+    /**
+     * Réserve la finalisation : une seule à la fois, aucune une fois terminée. Une finalisation en échec,
+     * ou commencée avant {@code staleBefore}, peut être relancée. Retourne la session réservée,
+     * vide si la réservation est refusée.
+     */
+    Optional<RegistrationSession> claimCompletion(String sessionId, LocalDateTime now, LocalDateTime staleBefore);
+
+    void recordKeycloakUser(RegistrationSession session, String keycloakUserId);
+
+    /**
+     * Transition vers COMPLETED, uniquement depuis une finalisation réservée ; {@code false} sinon.
+     */
+    boolean markCompleted(RegistrationSession session);
+
+    void markCompletionFailed(RegistrationSession session, String error);
+
+    int deleteExpiredBefore(LocalDateTime dateTime);
+
+    int deleteCompleted();
+
+    /**
+     * Vrai si les sessions sont des lignes de {@code registration_sessions} : sur le schéma partitionné,
+     * elles sont alors supprimées avec leur partition plutôt que par {@link #deleteExpiredBefore}.
+     */
+    boolean storedInSessionTable();
+}
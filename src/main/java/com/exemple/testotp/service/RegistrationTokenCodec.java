@@ -0,0 +1,102 @@
+package com.exemple.testotp.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Jeton de session compact : {@code base64url(état binaire) "." base64url(HMAC-SHA256)}.
+ * Le contenu est signé, pas chiffré : il ne contient que les données saisies par le client.
+ * La clé précédente, si fournie, reste acceptée en vérification pour permettre la rotation.
+ */
+final class RegistrationTokenCodec {
+
+    record Claims(UUID tokenId, String firstName, String lastName, String email, String phoneNumber,
+                  boolean otpVerified, long expiresAtEpochSecond) {
+    }
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final ThreadLocal<Mac> currentMac;
+    private final ThreadLocal<Mac> previousMac;
+
+    RegistrationTokenCodec(byte[] key, byte[] previousKey) {
+        this.currentMac = macFor(key);
+        this.previousMac = previousKey == null || previousKey.length == 0 ? null : macFor(previousKey);
+    }
+
+    String encode(Claims claims) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(claims.tokenId().getMostSignificantBits());
+            out.writeLong(claims.tokenId().getLeastSignificantBits());
+            out.writeLong(claims.expiresAtEpochSecond());
+            out.writeBoolean(claims.otpVerified());
+            out.writeUTF(claims.firstName());
+            out.writeUTF(claims.lastName());
+            out.writeUTF(claims.email());
+            out.writeUTF(claims.phoneNumber());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] payload = bytes.toByteArray();
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(currentMac.get().doFinal(payload));
+    }
+
+    /**
+     * Contenu du jeton si sa signature est valide, y compris s'il a expiré.
+     */
+    Optional<Claims> decode(String token) {
+        int separator = token == null ? -1 : token.indexOf('.');
+        if (separator <= 0) {
+            return Optional.empty();
+        }
+        try {
+            byte[] payload = DECODER.decode(token.substring(0, separator));
+            byte[] signature = DECODER.decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(signature, currentMac.get().doFinal(payload))
+                    && (previousMac == null || !MessageDigest.isEqual(signature, previousMac.get().doFinal(payload)))) {
+                return Optional.empty();
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            if (in.readByte() != VERSION) {
+                return Optional.empty();
+            }
+            UUID tokenId = new UUID(in.readLong(), in.readLong());
+            long expiresAtEpochSecond = in.readLong();
+            boolean otpVerified = in.readBoolean();
+            return Optional.of(new Claims(tokenId, in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+                    otpVerified, expiresAtEpochSecond));
+        } catch (IllegalArgumentException | IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static ThreadLocal<Mac> macFor(byte[] key) {
+        SecretKeySpec spec = new SecretKeySpec(key, ALGORITHM);
+        return ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(spec);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC indisponible", e);
+            }
+        });
+    }
+}
@@ -0,0 +1,208 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OtpCode;
+import com.exemple.testotp.repository.OtpCodeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envoi des SMS de rappel pour les OTP WhatsApp non vérifiés.
+ * <p>
+ * En régime normal, chaque rappel est déclenché à son échéance par
+ * {@link com.exemple.testotp.scheduler.ReminderScheduler} et réservé seul ({@code FOR UPDATE SKIP LOCKED}).
+ * Au démarrage et à chaque changement de partition du cluster, les rappels échus de la partition
+ * sont rattrapés par pages, les SMS d'une page partant en parallèle sur un pool borné.
+ * <p>
+ * La réservation marque le rappel comme envoyé et valide aussitôt sa transaction : aucun verrou ni connexion
+ * n'est conservé pendant l'appel Twilio, et un SMS parti ne peut plus être renvoyé faute de commit.
+ * Un envoi en échec remet le rappel en attente ; un arrêt entre réservation et envoi perd le rappel
+ * plutôt que de le dupliquer.
+ */
+@Service
+@Slf4j
+public class ReminderDispatcher {
+
+    public enum ReminderOutcome {
+        SENT, SKIPPED, FAILED
+    }
+
+    private final OtpCodeRepository otpCodeRepository;
+    private final OtpStore otpStore;
+    private final OtpService otpService;
+    private final AsyncTaskExecutor reminderExecutor;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final AtomicLong dispatchLagMillis = new AtomicLong();
+
+    @Value("${otp.sms.reminder.delay.minutes:5}")
+    private int smsReminderDelayMinutes;
+
+    @Value("${otp.reminder.page.size:100}")
+    private int pageSize;
+
+    public ReminderDispatcher(OtpCodeRepository otpCodeRepository,
+                              OtpStore otpStore,
+                              OtpService otpService,
+                              AsyncTaskExecutor reminderExecutor,
+                              MeterRegistry meterRegistry) {
+        this.otpCodeRepository = otpCodeRepository;
+        this.otpStore = otpStore;
+        this.otpService = otpService;
+        this.reminderExecutor = reminderExecutor;
+        this.sentCounter = Counter.builder("otp.reminder.sent")
+                .description("SMS de rappel envoyés")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("otp.reminder.failed")
+                .description("SMS de rappel en échec")
+                .register(meterRegistry);
+        Gauge.builder("otp.reminder.dispatch.lag", dispatchLagMillis, lag -> lag.get() / 1000.0)
+                .description("Retard du dernier rappel envoyé sur son échéance")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Envoie le rappel du numéro s'il est toujours dû (OTP ni vérifié, ni expiré, ni déjà relancé).
+     */
+    public ReminderOutcome dispatchReminder(String phoneNumber) {
+        LocalDateTime now = LocalDateTime.now();
+        return dispatch(phoneNumber, now, now.minusMinutes(smsReminderDelayMinutes));
+    }
+
+    /**
+     * Envoie tout de suite le code par SMS, le message WhatsApp n'ayant pas été remis.
+     */
+    public ReminderOutcome dispatchFallback(String phoneNumber) {
+        LocalDateTime now = LocalDateTime.now();
+        return dispatch(phoneNumber, now, now);
+    }
+
+    private ReminderOutcome dispatch(String phoneNumber, LocalDateTime now, LocalDateTime reminderTime) {
+        LocalDateTime claimedAt = claimTime();
+        Optional<OtpCode> claimed = otpStore.claimReminder(phoneNumber, now, reminderTime, claimedAt);
+        if (claimed.isEmpty()) {
+            return ReminderOutcome.SKIPPED;
+        }
+
+        OtpCode otp = claimed.get();
+        if (!send(otp)) {
+            release(List.of(otp.getId()), claimedAt);
+            return ReminderOutcome.FAILED;
+        }
+        if (!isFallback(otp)) {
+            dispatchLagMillis.set(Math.max(0, Duration.between(
+                    otp.getWhatsappSentAt().plusMinutes(smsReminderDelayMinutes), now).toMillis()));
+        }
+        return ReminderOutcome.SENT;
+    }
+
+    /**
+     * Le code est déjà parti par SMS (canal WhatsApp dégradé) : plus de rappel à envoyer.
+     */
+    public void skipReminder(String phoneNumber) {
+        otpCodeRepository.markSmsReminderSentForPhone(phoneNumber, LocalDateTime.now());
+    }
+
+    public void dispatchPendingReminders(int shardIndex, int shardCount) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime reminderTime = now.minusMinutes(smsReminderDelayMinutes);
+
+        long lastId = 0;
+        int sent = 0;
+        while (true) {
+            long afterId = lastId;
+            PageResult page = dispatchPage(now, reminderTime, shardIndex, shardCount, afterId);
+            if (page.claimed() == 0) {
+                break;
+            }
+            sent += page.sent();
+            lastId = page.lastId();
+            if (page.claimed() < pageSize) {
+                break;
+            }
+        }
+
+        if (sent > 0) {
+            log.info("{} SMS de rappel envoyés", sent);
+        }
+    }
+
+    private record PageResult(int claimed, int sent, long lastId) {
+    }
+
+    private PageResult dispatchPage(LocalDateTime now, LocalDateTime reminderTime,
+                                    int shardIndex, int shardCount, long afterId) {
+        LocalDateTime claimedAt = claimTime();
+        List<OtpCode> page = otpStore.claimReminders(now, reminderTime,
+                shardIndex, shardCount, afterId, pageSize, claimedAt);
+        if (page.isEmpty()) {
+            return new PageResult(0, 0, afterId);
+        }
+
+        List<CompletableFuture<Boolean>> sends = page.stream()
+                .map(otp -> CompletableFuture.supplyAsync(() -> send(otp), reminderExecutor))
+                .toList();
+        List<Long> failedIds = new ArrayList<>();
+        for (int i = 0; i < page.size(); i++) {
+            if (!sends.get(i).join()) {
+                failedIds.add(page.get(i).getId());
+            }
+        }
+
+        if (!failedIds.isEmpty()) {
+            release(failedIds, claimedAt);
+        }
+        // RETURNING ne garantit pas l'ordre : la page reprend après le plus grand identifiant réservé
+        long lastId = page.stream().mapToLong(OtpCode::getId).max().orElse(afterId);
+        return new PageResult(page.size(), page.size() - failedIds.size(), lastId);
+    }
+
+    private void release(List<Long> ids, LocalDateTime claimedAt) {
+        try {
+            otpCodeRepository.releaseSmsReminder(ids, claimedAt);
+        } catch (Exception e) {
+            log.error("Impossible de remettre en attente {} rappel(s) SMS en échec", ids.size(), e);
+        }
+    }
+
+    // Précision de la colonne (microseconde) : la remise en attente compare la valeur relue telle quelle
+    private static LocalDateTime claimTime() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    // WhatsApp non remis : le SMS porte le code sans renvoyer vers WhatsApp
+    private static boolean isFallback(OtpCode otp) {
+        return otp.getWhatsappStatus() == OtpCode.WhatsappStatus.FAILED;
+    }
+
+    private boolean send(OtpCode otp) {
+        try {
+            if (isFallback(otp)) {
+                otpService.sendFallbackSms(otp);
+            } else {
+                otpService.sendReminderSms(otp);
+            }
+            sentCounter.increment();
+            return true;
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.warn("Échec du SMS de rappel pour l'OTP {}: {}", otp.getId(), e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.RegistrationSession;
+import com.exemple.testotp.entity.RegistrationTokenCompletion;
+import com.exemple.testotp.repository.RegistrationTokenCompletionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Sessions sans état : l'identifiant de session est un jeton HMAC portant nom, email, téléphone,
+ * vérification OTP et expiration. N'importe quelle instance sert n'importe quelle étape sans lecture en base.
+ * Seule la finalisation écrit dans {@code registration_token_completions}, qui sert aussi d'ensemble
+ * des jetons consommés jusqu'à leur expiration.
+ */
+@Component
+@ConditionalOnProperty(name = "registration.session.mode", havingValue = "token")
+public class SignedTokenRegistrationSessionStore implements RegistrationSessionStore {
+
+    private static final int MIN_KEY_BYTES = 32;
+
+    private final RegistrationTokenCompletionRepository completionRepository;
+    private final RegistrationTokenCodec codec;
+
+    public SignedTokenRegistrationSessionStore(RegistrationTokenCompletionRepository completionRepository,
+                                               @Value("${registration.session.token.secret:}") String secret,
+                                               @Value("${registration.session.token.previous-secret:}") String previousSecret) {
+        this.completionRepository = completionRepository;
+        byte[] key = secret.isBlank() ? new byte[0] : Base64.getDecoder().decode(secret);
+        if (key.length < MIN_KEY_BYTES) {
+            throw new IllegalStateException(
+                    "registration.session.token.secret doit contenir au moins " + MIN_KEY_BYTES + " octets encodés en base64");
+        }
+        byte[] previousKey = previousSecret.isBlank() ? null : Base64.getDecoder().decode(previousSecret);
+        this.codec = new RegistrationTokenCodec(key, previousKey);
+    }
+
+    @Override
+    public RegistrationSession create(RegistrationSession session) {
+        session.setCreatedAt(LocalDateTime.now());
+        session.setSessionId(codec.encode(toClaims(UUID.randomUUID(), session)));
+        return session;
+    }
+
+    @Override
+    public Optional<RegistrationSession> find(String sessionId) {
+        return codec.decode(sessionId).map(claims -> {
+            RegistrationSession session = new RegistrationSession();
+            session.setSessionId(sessionId);
+            session.setFirstName(claims.firstName());
+            session.setLastName(claims.lastName());
+            session.setEmail(claims.email());
+            session.setPhoneNumber(claims.phoneNumber());
+            session.setOtpVerified(claims.otpVerified());
+            session.setExpiresAt(LocalDateTime.ofInstant(
+                    Instant.ofEpochSecond(claims.expiresAtEpochSecond()), ZoneId.systemDefault()));
+
+            // Seul un jeton vérifié peut avoir une finalisation enregistrée
+            if (claims.otpVerified()) {
+                completionRepository.findById(claims.tokenId().toString()).ifPresent(completion -> {
+                    session.setCompletionStatus(completion.getStatus());
+                    session.setCompletionStartedAt(completion.getStartedAt());
+                    session.setKeycloakUserId(completion.getKeycloakUserId());
+                    session.setCompletionError(completion.getError());
+                    session.setCompleted(completion.getStatus() == RegistrationSession.CompletionStatus.COMPLETED);
+                });
+            }
+            return session;
+        });
+    }
+
+    // L'état STARTED est porté par le jeton lui-même : la transition n'émet qu'un nouveau jeton
+    @Override
+    public Optional<RegistrationSession> markOtpVerified(String sessionId, LocalDateTime now) {
+        return find(sessionId)
+                .filter(session -> session.getState() == RegistrationSession.State.STARTED
+                        && session.getExpiresAt().isAfter(now))
+                .map(session -> {
+                    session.setOtpVerified(true);
+                    session.setSessionId(codec.encode(toClaims(tokenId(session), session)));
+                    return session;
+                });
+    }
+
+    @Override
+    @Transactional
+    public Optional<RegistrationSession> claimCompletion(String sessionId, LocalDateTime now, LocalDateTime staleBefore) {
+        return find(sessionId)
+                .filter(session -> session.getState() == RegistrationSession.State.OTP_VERIFIED
+                        && session.getExpiresAt().isAfter(now))
+                .filter(session -> completionRepository.claim(
+                        tokenId(session).toString(), now, session.getExpiresAt(), staleBefore) == 1)
+                .map(session -> {
+                    session.setCompletionStatus(RegistrationSession.CompletionStatus.PROCESSING);
+                    session.setCompletionStartedAt(now);
+                    session.setCompletionError(null);
+                    return session;
+                });
+    }
+
+    @Override
+    @Transactional
+    public void recordKeycloakUser(RegistrationSession session, String keycloakUserId) {
+        completionRepository.recordKeycloakUser(tokenId(session).toString(), keycloakUserId);
+    }
+
+    @Override
+    @Transactional
+    public boolean markCompleted(RegistrationSession session) {
+        return completionRepository.updateStatus(tokenId(session).toString(),
+                RegistrationSession.CompletionStatus.PROCESSING, RegistrationSession.CompletionStatus.COMPLETED, null) == 1;
+    }
+
+    @Override
+    @Transactional
+    public void markCompletionFailed(RegistrationSession session, String error) {
+        completionRepository.updateStatus(tokenId(session).toString(),
+                RegistrationSession.CompletionStatus.PROCESSING, RegistrationSession.CompletionStatus.FAILED, error);
+    }
+
+    // Un jeton expiré ne peut plus être présenté : sa trace de consommation devient inutile
+    @Override
+    @Transactional
+    public int deleteExpiredBefore(LocalDateTime dateTime) {
+        return completionRepository.deleteExpiredBefore(dateTime);
+    }
+
+    @Override
+    @Transactional
+    public int deleteCompleted() {
+        return completionRepository.deleteExpiredBefore(LocalDateTime.now());
+    }
+
+    // registration_token_completions n'est pas partitionnée : nettoyée ligne à ligne dans tous les cas
+    @Override
+    public boolean storedInSessionTable() {
+        return false;
+    }
+
+    private UUID tokenId(RegistrationSession session) {
+        return codec.decode(session.getSessionId())
+                .orElseThrow(() -> new IllegalStateException("Jeton de session invalide"))
+                .tokenId();
+    }
+
+    private static RegistrationTokenCodec.Claims toClaims(UUID tokenId, RegistrationSession session) {
+        return new RegistrationTokenCodec.Claims(tokenId,
+                session.getFirstName(),
+                session.getLastName(),
+                session.getEmail(),
+                session.getPhoneNumber(),
+                session.isOtpVerified(),
+                session.getExpiresAt().atZone(ZoneId.systemDefault()).toEpochSecond());
+    }
+}
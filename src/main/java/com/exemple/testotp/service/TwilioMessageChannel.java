@@ -0,0 +1,71 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OutboundMessage;
+import com.exemple.testotp.exception.SmsException;
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.rest.api.v2010.account.MessageCreator;
+import com.twilio.type.PhoneNumber;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+
+/**
+ * Envoi par l'API Twilio Messages. WhatsApp et SMS ne diffèrent que par le préfixe
+ * des adresses ({@code whatsapp:}) et le numéro expéditeur. Si {@code statusCallback} est renseigné,
+ * Twilio y notifie chaque changement de statut de remise du message.
+ */
+@Slf4j
+public class TwilioMessageChannel implements MessageChannel {
+
+    private final OutboundMessage.Channel type;
+    private final String addressPrefix;
+    private final String from;
+    private final URI statusCallback;
+    private final MeterRegistry meterRegistry;
+
+    public TwilioMessageChannel(OutboundMessage.Channel type, String addressPrefix, String from,
+                                URI statusCallback, MeterRegistry meterRegistry) {
+        this.type = type;
+        this.addressPrefix = addressPrefix;
+        this.from = from;
+        this.statusCallback = statusCallback;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public OutboundMessage.Channel type() {
+        return type;
+    }
+
+    @Override
+    public String send(String recipient, String body) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            MessageCreator creator = Message.creator(
+                    new PhoneNumber(addressPrefix + recipient),
+                    new PhoneNumber(addressPrefix + from),
+                    body
+            );
+            if (statusCallback != null) {
+                creator.setStatusCallback(statusCallback);
+            }
+            Message message = creator.create();
+            log.info("{} envoyé avec succès. SID: {}", type, message.getSid());
+            return message.getSid();
+        } catch (Exception e) {
+            outcome = "error";
+            log.error("Erreur lors de l'envoi du {}: {}", type, e.getMessage(), e);
+            throw new SmsException("Impossible d'envoyer le message " + type, e);
+        } finally {
+            sample.stop(Timer.builder("twilio.requests")
+                    .description("Appels à l'API Twilio Messages")
+                    .tag("channel", type.name().toLowerCase())
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Index probabiliste (filtre de Bloom) des emails et numéros déjà inscrits.
+ * <p>
+ * Une réponse négative est certaine et évite la base ; une réponse positive doit être confirmée par
+ * {@link UserRepository#findTakenIdentifiers}. Tant que le chargement initial n'est pas terminé, tout
+ * est considéré comme potentiellement présent. Les utilisateurs créés par d'autres instances ne sont
+ * vus qu'à la reconstruction périodique : les contraintes UNIQUE de {@code users} restent le garde-fou.
+ */
+@Component
+@Slf4j
+public class UserExistenceIndex {
+
+    private record Filters(BloomFilter emails, BloomFilter phoneNumbers) {
+        void put(String email, String phoneNumber) {
+            emails.put(normalizeEmail(email));
+            phoneNumbers.put(normalizePhoneNumber(phoneNumber));
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter indexChecks;
+    private final Counter databaseChecks;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private volatile Filters filters;
+    private volatile Filters rebuilding;
+
+    public UserExistenceIndex(UserRepository userRepository,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${user.existence.index.enabled:true}") boolean enabled,
+                              @Value("${user.existence.index.expected-insertions:1000000}") long expectedInsertions,
+                              @Value("${user.existence.index.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        // Parcours complet de users : lecture seule, servie par un réplica si le routage est actif
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.indexChecks = Counter.builder("user.existence.checks")
+                .description("Vérifications d'unicité email / téléphone")
+                .tag("source", "index")
+                .register(meterRegistry);
+        this.databaseChecks = Counter.builder("user.existence.checks")
+                .description("Vérifications d'unicité email / téléphone")
+                .tag("source", "database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Retourne {@code false} si ni l'email ni le numéro ne peuvent appartenir à un utilisateur existant.
+     */
+    public boolean mightExist(String email, String phoneNumber) {
+        Filters current = filters;
+        if (current == null
+                || current.emails().mightContain(normalizeEmail(email))
+                || current.phoneNumbers().mightContain(normalizePhoneNumber(phoneNumber))) {
+            databaseChecks.increment();
+            return true;
+        }
+        indexChecks.increment();
+        return false;
+    }
+
+    public void add(String email, String phoneNumber) {
+        // Lire le filtre en construction avant le filtre courant : l'ajout ne peut pas tomber entre les deux
+        Filters next = rebuilding;
+        Filters current = filters;
+        if (next != null) {
+            next.put(email, phoneNumber);
+        }
+        if (current != null) {
+            current.put(email, phoneNumber);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${user.existence.index.rebuild.interval.ms:600000}",
+            fixedDelayString = "${user.existence.index.rebuild.interval.ms:600000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            // Dimensionné avec de la marge pour absorber les inscriptions jusqu'à la prochaine reconstruction
+            long capacity = Math.max(expectedInsertions, userRepository.count() * 2);
+            Filters next = new Filters(new BloomFilter(capacity, falsePositiveRate),
+                    new BloomFilter(capacity, falsePositiveRate));
+            rebuilding = next;
+
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<UserRepository.UserIdentifiers> users = userRepository.streamIdentifiers()) {
+                    users.forEach(user -> next.put(user.getEmail(), user.getPhoneNumber()));
+                }
+            });
+
+            filters = next;
+            log.info("Index d'existence des utilisateurs reconstruit (capacité: {})", capacity);
+        } catch (Exception e) {
+            log.error("Erreur lors de la reconstruction de l'index d'existence des utilisateurs", e);
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    static String normalizeEmail(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static String normalizePhoneNumber(String phoneNumber) {
+        if (phoneNumber == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(phoneNumber.length());
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (Character.isDigit(c) || (c == '+' && normalized.isEmpty())) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,348 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.dto.UserImportRowResultDto;
+import com.exemple.testotp.dto.UserImportSummaryDto;
+import com.exemple.testotp.dto.UserRegistrationDto;
+import com.exemple.testotp.entity.User;
+import com.exemple.testotp.exception.InvalidImportFileException;
+import com.exemple.testotp.exception.KeycloakException;
+import com.exemple.testotp.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Import en masse d'utilisateurs depuis un flux CSV (ligne d'en-tête obligatoire) ou NDJSON.
+ * <p>
+ * Le flux est lu ligne à ligne et traité par lots de {@code user.import.batch-size} : validation avec
+ * les contraintes de {@link UserRegistrationDto}, dédoublonnage (filtre de Bloom puis une requête par
+ * lot), un appel d'import partiel Keycloak, puis les INSERT regroupés par JDBC. Le résultat de chaque
+ * ligne est transmis au fur et à mesure. Un import interrompu peut être relancé : les utilisateurs
+ * déjà créés dans Keycloak pour le même numéro sont repris.
+ */
+@Service
+@Slf4j
+public class UserImportService {
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    public enum RowStatus {
+        IMPORTED, DUPLICATE, INVALID, FAILED
+    }
+
+    private static final List<String> CSV_COLUMNS = List.of("firstName", "lastName", "email", "phoneNumber");
+
+    private record Row(long line, UserRegistrationDto user) {
+    }
+
+    private final UserRepository userRepository;
+    private final KeycloakService keycloakService;
+    private final UserExistenceIndex userExistenceIndex;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<RowStatus, Counter> rowCounters = new EnumMap<>(RowStatus.class);
+
+    @Value("${user.import.batch-size:500}")
+    private int batchSize;
+
+    public UserImportService(UserRepository userRepository,
+                             KeycloakService keycloakService,
+                             UserExistenceIndex userExistenceIndex,
+                             Validator validator,
+                             ObjectMapper objectMapper,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.keycloakService = keycloakService;
+        this.userExistenceIndex = userExistenceIndex;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        for (RowStatus status : RowStatus.values()) {
+            rowCounters.put(status, Counter.builder("user.import.rows")
+                    .description("Lignes traitées par l'import en masse")
+                    .tag("outcome", status.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Importe les utilisateurs du flux ; {@code sink} reçoit le résultat de chaque ligne.
+     */
+    public UserImportSummaryDto importUsers(InputStream input, Format format,
+                                            Consumer<UserImportRowResultDto> sink) throws IOException {
+        long start = System.nanoTime();
+        Map<RowStatus, Long> counts = new EnumMap<>(RowStatus.class);
+        Consumer<UserImportRowResultDto> report = result -> {
+            RowStatus status = RowStatus.valueOf(result.getStatus());
+            counts.merge(status, 1L, Long::sum);
+            rowCounters.get(status).increment();
+            sink.accept(result);
+        };
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        int[] columns = null;
+        if (format == Format.CSV) {
+            columns = readCsvHeader(reader.readLine());
+            lineNumber++;
+        }
+
+        List<Row> chunk = new ArrayList<>(batchSize);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+
+            UserRegistrationDto user;
+            try {
+                user = format == Format.CSV ? parseCsvRow(line, columns)
+                        : objectMapper.readValue(line, UserRegistrationDto.class);
+            } catch (IllegalArgumentException | JsonProcessingException e) {
+                report.accept(result(lineNumber, RowStatus.INVALID, null, "Ligne illisible"));
+                continue;
+            }
+
+            Set<ConstraintViolation<UserRegistrationDto>> violations = validator.validate(user);
+            if (!violations.isEmpty()) {
+                report.accept(result(lineNumber, RowStatus.INVALID, user.getEmail(), violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining(", "))));
+                continue;
+            }
+
+            chunk.add(new Row(lineNumber, user));
+            if (chunk.size() >= batchSize) {
+                importChunk(chunk, report);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, report);
+        }
+
+        long durationMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        long total = counts.values().stream().mapToLong(Long::longValue).sum();
+        UserImportSummaryDto summary = new UserImportSummaryDto(total,
+                counts.getOrDefault(RowStatus.IMPORTED, 0L),
+                counts.getOrDefault(RowStatus.DUPLICATE, 0L),
+                counts.getOrDefault(RowStatus.INVALID, 0L),
+                counts.getOrDefault(RowStatus.FAILED, 0L),
+                durationMs,
+                total * 1000.0 / durationMs);
+        log.info("Import terminé: {} lignes en {} ms ({} lignes/s), {} importées", total, durationMs,
+                Math.round(summary.getRowsPerSecond()), summary.getImported());
+        return summary;
+    }
+
+    private void importChunk(List<Row> chunk, Consumer<UserImportRowResultDto> report) {
+        // Doublons dans le lot lui-même, puis en base pour les seules lignes signalées par le filtre de Bloom
+        Set<String> emails = new HashSet<>();
+        Set<String> phoneNumbers = new HashSet<>();
+        List<Row> candidates = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            boolean newEmail = emails.add(row.user().getEmail().toLowerCase(Locale.ROOT));
+            boolean newPhoneNumber = phoneNumbers.add(row.user().getPhoneNumber());
+            if (newEmail && newPhoneNumber) {
+                candidates.add(row);
+            } else {
+                report.accept(result(row.line(), RowStatus.DUPLICATE, row.user().getEmail(), "Doublon dans le fichier"));
+            }
+        }
+
+        List<Row> suspects = candidates.stream()
+                .filter(row -> userExistenceIndex.mightExist(row.user().getEmail(), row.user().getPhoneNumber()))
+                .toList();
+        if (!suspects.isEmpty()) {
+            Set<String> takenEmails = new HashSet<>();
+            Set<String> takenPhoneNumbers = new HashSet<>();
+            userRepository.findIdentifiersIn(
+                    suspects.stream().map(row -> row.user().getEmail()).toList(),
+                    suspects.stream().map(row -> row.user().getPhoneNumber()).toList()
+            ).forEach(taken -> {
+                takenEmails.add(taken.getEmail());
+                takenPhoneNumbers.add(taken.getPhoneNumber());
+            });
+            candidates = candidates.stream()
+                    .filter(row -> {
+                        boolean taken = takenEmails.contains(row.user().getEmail())
+                                || takenPhoneNumbers.contains(row.user().getPhoneNumber());
+                        if (taken) {
+                            report.accept(result(row.line(), RowStatus.DUPLICATE, row.user().getEmail(),
+                                    "L'utilisateur existe déjà"));
+                        }
+                        return !taken;
+                    })
+                    .toList();
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> keycloakUserIds;
+        try {
+            keycloakUserIds = keycloakService.importUsers(candidates.stream().map(Row::user).toList());
+        } catch (KeycloakException e) {
+            log.error("Échec de l'import Keycloak d'un lot de {} utilisateurs: {}", candidates.size(), e.getMessage());
+            candidates.forEach(row -> report.accept(result(row.line(), RowStatus.FAILED, row.user().getEmail(),
+                    "Erreur lors de la création du compte")));
+            return;
+        }
+
+        List<Row> rows = new ArrayList<>(candidates.size());
+        List<User> users = new ArrayList<>(candidates.size());
+        for (Row row : candidates) {
+            String keycloakUserId = keycloakUserIds.get(row.user().getEmail().toLowerCase(Locale.ROOT));
+            if (keycloakUserId == null) {
+                report.accept(result(row.line(), RowStatus.DUPLICATE, row.user().getEmail(),
+                        "Un autre utilisateur Keycloak existe déjà avec cet email"));
+                continue;
+            }
+            rows.add(row);
+            users.add(toUser(row.user(), keycloakUserId));
+        }
+        persist(rows, users, report);
+    }
+
+    private void persist(List<Row> rows, List<User> users, Consumer<UserImportRowResultDto> report) {
+        try {
+            // Une transaction par lot : les INSERT partent par paquets de hibernate.jdbc.batch_size
+            transactionTemplate.executeWithoutResult(status -> userRepository.saveAll(users));
+            for (int i = 0; i < rows.size(); i++) {
+                imported(rows.get(i), users.get(i), report);
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Inscription concurrente : reprise ligne par ligne pour isoler les conflits
+            log.warn("Conflit d'unicité dans un lot importé, reprise ligne par ligne");
+            for (int i = 0; i < rows.size(); i++) {
+                Row row = rows.get(i);
+                User user = toUser(row.user(), users.get(i).getKeycloakUserId());
+                try {
+                    transactionTemplate.executeWithoutResult(status -> userRepository.save(user));
+                    imported(row, user, report);
+                } catch (DataIntegrityViolationException conflict) {
+                    report.accept(result(row.line(), RowStatus.DUPLICATE, row.user().getEmail(), "L'utilisateur existe déjà"));
+                } catch (RuntimeException failure) {
+                    log.error("Erreur lors de l'enregistrement de l'utilisateur importé {}", row.user().getEmail(), failure);
+                    report.accept(result(row.line(), RowStatus.FAILED, row.user().getEmail(), "Erreur lors de l'enregistrement"));
+                }
+            }
+        }
+    }
+
+    private void imported(Row row, User user, Consumer<UserImportRowResultDto> report) {
+        userExistenceIndex.add(user.getEmail(), user.getPhoneNumber());
+        report.accept(result(row.line(), RowStatus.IMPORTED, user.getEmail(), null));
+    }
+
+    private User toUser(UserRegistrationDto dto, String keycloakUserId) {
+        User user = new User();
+        user.setFirstName(dto.getFirstName());
+        user.setLastName(dto.getLastName());
+        user.setEmail(dto.getEmail());
+        user.setPhoneNumber(dto.getPhoneNumber());
+        // Ni mot de passe local ni numéro vérifié : l'utilisateur définit son mot de passe dans Keycloak
+        user.setPhoneVerified(false);
+        user.setActive(true);
+        user.setKeycloakUserId(keycloakUserId);
+        return user;
+    }
+
+    private static UserImportRowResultDto result(long line, RowStatus status, String email, String message) {
+        return new UserImportRowResultDto(line, status.name(), email, message);
+    }
+
+    private static int[] readCsvHeader(String header) {
+        if (header == null) {
+            throw new InvalidImportFileException("Fichier CSV vide");
+        }
+        List<String> names = splitCsvLine(header.replace("\uFEFF", ""));
+        int[] columns = new int[CSV_COLUMNS.size()];
+        for (int i = 0; i < CSV_COLUMNS.size(); i++) {
+            String column = CSV_COLUMNS.get(i);
+            columns[i] = -1;
+            for (int j = 0; j < names.size(); j++) {
+                if (names.get(j).trim().equalsIgnoreCase(column)) {
+                    columns[i] = j;
+                }
+            }
+            if (columns[i] < 0) {
+                throw new InvalidImportFileException("Colonne CSV manquante: " + column);
+            }
+        }
+        return columns;
+    }
+
+    private static UserRegistrationDto parseCsvRow(String line, int[] columns) {
+        List<String> fields = splitCsvLine(line);
+        String[] values = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = columns[i] < fields.size() ? fields.get(columns[i]).trim() : null;
+        }
+        return new UserRegistrationDto(values[0], values[1], values[2], values[3]);
+    }
+
+    /**
+     * Découpe une ligne CSV (séparateur virgule, champs entre guillemets avec {@code ""} pour un guillemet).
+     * Les champs sur plusieurs lignes ne sont pas pris en charge.
+     */
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Guillemet non fermé");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
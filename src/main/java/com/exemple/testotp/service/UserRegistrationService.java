@@ -5,14 +5,22 @@ import com.exemple.testotp.dto.RegistrationResponseDto;
 import com.exemple.testotp.dto.UserRegistrationDto;
 import com.exemple.testotp.entity.RegistrationSession;
 import com.exemple.testotp.entity.User;
+import com.exemple.testotp.exception.InvalidOtpException;
+import com.exemple.testotp.exception.RegistrationBusyException;
 import com.exemple.testotp.exception.UserAlreadyExistsException;
 import com.exemple.testotp.mapper.UserMapper;
 import com.exemple.testotp.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @RequiredArgsConstructor
@@ -25,28 +33,50 @@ public class UserRegistrationService {
     private final KeycloakService keycloakService;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
-
-    @Transactional
-    public RegistrationResponseDto startRegistration(UserRegistrationDto registrationDto) {
-        // Vérifier si l'utilisateur existe déjà
-        if (userRepository.existsByEmail(registrationDto.getEmail())) {
-            throw new UserAlreadyExistsException("Un utilisateur avec cet email existe déjà");
-        }
-
-        if (userRepository.existsByPhoneNumber(registrationDto.getPhoneNumber())) {
-            throw new UserAlreadyExistsException("Un utilisateur avec ce numéro de téléphone existe déjà");
+    private final RegistrationMetrics registrationMetrics;
+    private final UserExistenceIndex userExistenceIndex;
+    private final OtpSendRateLimiter otpSendRateLimiter;
+    private final TransactionTemplate transactionTemplate;
+    private final AsyncTaskExecutor registrationExecutor;
+    private final OtpAttemptLimiter otpAttemptLimiter;
+
+    @Value("${registration.complete.async.enabled:false}")
+    private boolean asyncCompletion;
+
+    @Timed(value = "registration.step", extraTags = {"step", "start"}, histogram = true)
+    public RegistrationResponseDto startRegistration(UserRegistrationDto registrationDto, String clientIp) {
+        // Limiter les envois avant toute écriture en base ou appel Twilio
+        otpSendRateLimiter.checkOtpSend(registrationDto.getPhoneNumber(), clientIp);
+        // Numéro bloqué après trop d'échecs de vérification : pas de nouveau code avant la fin du blocage
+        otpAttemptLimiter.checkAllowed(OtpAttemptLimiter.Scope.PHONE, registrationDto.getPhoneNumber());
+
+        // Vérifier si l'utilisateur existe déjà (la base n'est interrogée que si l'index ne peut l'exclure)
+        if (userExistenceIndex.mightExist(registrationDto.getEmail(), registrationDto.getPhoneNumber())) {
+            UserRepository.TakenIdentifiers taken = userRepository.findTakenIdentifiers(
+                    registrationDto.getEmail(), registrationDto.getPhoneNumber());
+            if (taken.getEmailTaken()) {
+                throw new UserAlreadyExistsException("Un utilisateur avec cet email existe déjà");
+            }
+            if (taken.getPhoneNumberTaken()) {
+                throw new UserAlreadyExistsException("Un utilisateur avec ce numéro de téléphone existe déjà");
+            }
         }
 
-        // Créer une session d'inscription
-        RegistrationSession session = sessionService.createSession(
-                registrationDto.getFirstName(),
-                registrationDto.getLastName(),
-                registrationDto.getEmail(),
-                registrationDto.getPhoneNumber()
-        );
-
-        // Générer et envoyer l'OTP
-        otpService.generateAndSendOtp(registrationDto.getPhoneNumber());
+        // La vérification d'unicité ci-dessus est une lecture seule (réplica possible) ;
+        // la session et l'OTP sont écrits ensemble sur le primaire
+        RegistrationSession session = transactionTemplate.execute(status -> {
+            // Créer une session d'inscription
+            RegistrationSession created = sessionService.createSession(
+                    registrationDto.getFirstName(),
+                    registrationDto.getLastName(),
+                    registrationDto.getEmail(),
+                    registrationDto.getPhoneNumber()
+            );
+
+            // Générer et envoyer l'OTP
+            otpService.generateAndSendOtp(registrationDto.getPhoneNumber());
+            return created;
+        });
 
         log.info("Processus d'inscription démarré pour: {}", registrationDto.getEmail());
 
@@ -57,70 +87,154 @@ public class UserRegistrationService {
         );
     }
 
-    @Transactional
+    @Timed(value = "registration.step", extraTags = {"step", "verify-otp"}, histogram = true)
     public RegistrationResponseDto verifyOtp(String sessionId, String otpCode) {
-        RegistrationSession session = sessionService.getSession(sessionId);
-
-        // Vérifier l'OTP
-        otpService.verifyOtp(session.getPhoneNumber(), otpCode);
-
-        // Marquer l'OTP comme vérifié
-        sessionService.markOtpVerified(sessionId);
+        // Session ou numéro bloqué : refusé en mémoire, avant toute connexion à la base
+        otpAttemptLimiter.checkAllowed(sessionId);
+
+        AtomicReference<String> phoneNumber = new AtomicReference<>();
+        RegistrationSession verified;
+        try {
+            verified = transactionTemplate.execute(status -> {
+                // Transition STARTED → OTP_VERIFIED d'abord : elle retourne la session sans la relire,
+                // et un code incorrect annule la transaction (en mode jeton, un nouvel identifiant de session est émis)
+                RegistrationSession session = sessionService.markOtpVerified(sessionId);
+                phoneNumber.set(session.getPhoneNumber());
+                // Numéro bloqué par les échecs d'une autre session : refusé avant de consommer le code,
+                // la transition est annulée avec la transaction
+                otpAttemptLimiter.checkAllowed(OtpAttemptLimiter.Scope.PHONE, session.getPhoneNumber());
+
+                // Vérifier l'OTP
+                otpService.verifyOtp(session.getPhoneNumber(), otpCode);
+                return session;
+            });
+        } catch (InvalidOtpException e) {
+            // Transaction annulée et connexion rendue : l'échec est compté, puis le code supprimé
+            // dans une transaction distincte si le numéro a épuisé ses tentatives
+            if (otpAttemptLimiter.recordFailure(sessionId, phoneNumber.get())) {
+                otpService.revokeOtp(phoneNumber.get());
+            }
+            throw e;
+        }
+        otpAttemptLimiter.reset(sessionId, verified.getPhoneNumber());
 
-        log.info("OTP vérifié avec succès pour la session: {}", sessionId);
+        log.info("OTP vérifié avec succès pour: {}", verified.getEmail());
 
         return new RegistrationResponseDto(
-                sessionId,
+                verified.getSessionId(),
                 "Numéro de téléphone vérifié avec succès",
                 "SET_PASSWORD"
         );
     }
 
-    @Transactional
+    /**
+     * Finalise l'inscription : utilisateur Keycloak, hachage du mot de passe et insertion en base.
+     * Avec {@code registration.complete.async.enabled=true}, le travail part sur {@code registrationExecutor}
+     * et la réponse (étape {@code PROCESSING}) est suivie via {@link #getRegistrationStatus(String)}.
+     * Une même session n'est finalisée qu'une fois, même si la requête est rejouée.
+     */
+    @Timed(value = "registration.step", extraTags = {"step", "complete"}, histogram = true)
     public RegistrationResponseDto completeRegistration(PasswordSetupDto passwordDto) {
-        RegistrationSession session = sessionService.getSession(passwordDto.getSessionId());
-
-        // Vérifier que l'OTP a été vérifié
-        if (!session.isOtpVerified()) {
-            throw new IllegalStateException("Le numéro de téléphone doit être vérifié avant de définir le mot de passe");
-        }
-
         // Vérifier que les mots de passe correspondent
         if (!passwordDto.getPassword().equals(passwordDto.getConfirmPassword())) {
             throw new IllegalArgumentException("Les mots de passe ne correspondent pas");
         }
 
-        // Créer l'utilisateur dans Keycloak
-        String keycloakUserId = keycloakService.createUser(
-                session.getFirstName(),
-                session.getLastName(),
-                session.getEmail(),
-                session.getPhoneNumber(),
-                passwordDto.getPassword()
-        );
+        // Transition vers la finalisation, refusée en base si l'OTP n'est pas vérifié ;
+        // requête rejouée : la finalisation est déjà en cours ou terminée
+        RegistrationSessionService.CompletionClaim claim = sessionService.claimCompletion(passwordDto.getSessionId());
+        if (!claim.claimed()) {
+            return toStatusResponse(claim.session());
+        }
+        RegistrationSession session = claim.session();
+
+        if (!asyncCompletion) {
+            performCompletion(session, passwordDto.getPassword());
+            return new RegistrationResponseDto(
+                    null,
+                    "Compte créé avec succès",
+                    "COMPLETED"
+            );
+        }
 
-        // Créer l'utilisateur en base de données
-        User user = new User();
-        user.setFirstName(session.getFirstName());
-        user.setLastName(session.getLastName());
-        user.setEmail(session.getEmail());
-        user.setPhoneNumber(session.getPhoneNumber());
-        user.setPassword(passwordEncoder.encode(passwordDto.getPassword()));
-        user.setPhoneVerified(true);
-        user.setActive(true);
-        user.setKeycloakUserId(keycloakUserId);
+        try {
+            registrationExecutor.execute(() -> {
+                try {
+                    performCompletion(session, passwordDto.getPassword());
+                } catch (Exception e) {
+                    log.error("Erreur lors de la finalisation asynchrone de la session {}", session.getSessionId(), e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            sessionService.markCompletionFailed(session, "File de finalisation pleine");
+            throw new RegistrationBusyException("Trop d'inscriptions en cours, réessayez dans quelques secondes");
+        }
 
-        userRepository.save(user);
+        return new RegistrationResponseDto(
+                session.getSessionId(),
+                "Création du compte en cours",
+                "PROCESSING"
+        );
+    }
 
-        // Marquer la session comme terminée
-        sessionService.markCompleted(passwordDto.getSessionId());
+    public RegistrationResponseDto getRegistrationStatus(String sessionId) {
+        return toStatusResponse(sessionService.findSession(sessionId));
+    }
 
-        log.info("Inscription terminée avec succès pour: {}", session.getEmail());
+    private void performCompletion(RegistrationSession session, String password) {
+        try {
+            // Créer l'utilisateur dans Keycloak, sauf si une tentative précédente l'a déjà fait
+            String keycloakUserId = session.getKeycloakUserId();
+            if (keycloakUserId == null) {
+                keycloakUserId = keycloakService.createUser(
+                        session.getFirstName(),
+                        session.getLastName(),
+                        session.getEmail(),
+                        session.getPhoneNumber(),
+                        password
+                );
+                sessionService.recordKeycloakUser(session, keycloakUserId);
+            }
+
+            // Créer l'utilisateur en base de données
+            User user = new User();
+            user.setFirstName(session.getFirstName());
+            user.setLastName(session.getLastName());
+            user.setEmail(session.getEmail());
+            user.setPhoneNumber(session.getPhoneNumber());
+            user.setPassword(registrationMetrics.timePasswordHash(() -> passwordEncoder.encode(password)));
+            user.setPhoneVerified(true);
+            user.setActive(true);
+            user.setKeycloakUserId(keycloakUserId);
+
+            // L'utilisateur et la fin de session sont validés ensemble
+            transactionTemplate.executeWithoutResult(status -> {
+                userRepository.save(user);
+                sessionService.markCompleted(session);
+            });
+            userExistenceIndex.add(user.getEmail(), user.getPhoneNumber());
+
+            log.info("Inscription terminée avec succès pour: {}", session.getEmail());
+        } catch (RuntimeException e) {
+            sessionService.markCompletionFailed(session, e.getMessage());
+            throw e;
+        }
+    }
 
-        return new RegistrationResponseDto(
-                null,
-                "Compte créé avec succès",
-                "COMPLETED"
-        );
+    private RegistrationResponseDto toStatusResponse(RegistrationSession session) {
+        if (session.isCompleted()) {
+            return new RegistrationResponseDto(session.getSessionId(), "Compte créé avec succès", "COMPLETED");
+        }
+        if (session.getCompletionStatus() == RegistrationSession.CompletionStatus.PROCESSING) {
+            return new RegistrationResponseDto(session.getSessionId(), "Création du compte en cours", "PROCESSING");
+        }
+        if (session.getCompletionStatus() == RegistrationSession.CompletionStatus.FAILED) {
+            return new RegistrationResponseDto(session.getSessionId(),
+                    "Échec de la création du compte, veuillez réessayer", "SET_PASSWORD");
+        }
+        if (session.isOtpVerified()) {
+            return new RegistrationResponseDto(session.getSessionId(), "Numéro de téléphone vérifié", "SET_PASSWORD");
+        }
+        return new RegistrationResponseDto(session.getSessionId(), "Code OTP en attente de vérification", "VERIFY_OTP");
     }
 }
@@ -0,0 +1,3 @@
+-- Empreinte HMAC du code (OtpCodeHasher), comparée par la consommation en une requête.
+-- Le code en clair est retiré par V13 (chiffré dans code_ciphertext pour les messages qui le renvoient)
+ALTER TABLE otp_codes ADD COLUMN code_hash VARCHAR(64);
@@ -0,0 +1,5 @@
+-- Machine à états de la session (STARTED → OTP_VERIFIED → COMPLETED) : aucune finalisation,
+-- en cours ou terminée, sur une session dont l'OTP n'a pas été vérifié
+ALTER TABLE registration_sessions
+    ADD CONSTRAINT chk_registration_sessions_state
+        CHECK (otp_verified OR (NOT completed AND completion_status IS NULL));
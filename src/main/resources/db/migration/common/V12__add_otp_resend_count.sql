@@ -0,0 +1,2 @@
+-- Renvois du même code (OtpService, otp.resend.*) : seules la date d'envoi et ce compteur changent
+ALTER TABLE otp_codes ADD COLUMN resend_count INT NOT NULL DEFAULT 0;
@@ -0,0 +1,7 @@
+-- Le code n'est plus stocké en clair : empreinte (code_hash) pour la vérification,
+-- chiffré (code_ciphertext, OtpCodeCipher) pour les messages qui le renvoient
+ALTER TABLE otp_codes ALTER COLUMN code DROP NOT NULL;
+ALTER TABLE otp_codes ADD COLUMN code_ciphertext VARCHAR(128);
+UPDATE otp_codes SET code = NULL WHERE code IS NOT NULL;
+-- Codes émis avant code_hash : plus vérifiables sans le clair, un nouveau code doit être demandé
+DELETE FROM otp_codes WHERE code_hash IS NULL AND used = false;
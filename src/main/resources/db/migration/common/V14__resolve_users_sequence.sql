@@ -0,0 +1,7 @@
+-- V7 règle l'incrément de la séquence des users par son nom (users_id_seq). Le même réglage est appliqué
+-- à la séquence résolue depuis la colonne users.id, quel que soit son nom ; sans effet si c'est la même
+DO $$
+BEGIN
+    EXECUTE format('ALTER SEQUENCE %s INCREMENT BY 50', pg_get_serial_sequence('users', 'id'));
+END
+$$;
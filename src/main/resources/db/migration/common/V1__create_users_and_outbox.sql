@@ -0,0 +1,28 @@
+CREATE TABLE users (
+    id               BIGSERIAL    PRIMARY KEY,
+    first_name       VARCHAR(255) NOT NULL,
+    last_name        VARCHAR(255) NOT NULL,
+    email            VARCHAR(255) NOT NULL UNIQUE,
+    phone_number     VARCHAR(255) NOT NULL UNIQUE,
+    password         VARCHAR(255) NOT NULL,
+    phone_verified   BOOLEAN      NOT NULL,
+    active           BOOLEAN      NOT NULL,
+    keycloak_user_id VARCHAR(255),
+    created_at       TIMESTAMP(6),
+    updated_at       TIMESTAMP(6)
+);
+
+CREATE TABLE outbound_messages (
+    id                  BIGSERIAL     PRIMARY KEY,
+    channel             VARCHAR(255)  NOT NULL,
+    recipient           VARCHAR(255)  NOT NULL,
+    body                VARCHAR(1000) NOT NULL,
+    status              VARCHAR(255)  NOT NULL,
+    attempts            INTEGER       NOT NULL,
+    next_attempt_at     TIMESTAMP(6)  NOT NULL,
+    locked_until        TIMESTAMP(6),
+    provider_message_id VARCHAR(255),
+    last_error          VARCHAR(1000),
+    created_at          TIMESTAMP(6),
+    sent_at             TIMESTAMP(6)
+);
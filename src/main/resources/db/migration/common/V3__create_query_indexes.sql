@@ -0,0 +1,30 @@
+-- Index alignés sur les requêtes des repositories. Sur le schéma partitionné,
+-- chaque index est propagé automatiquement aux partitions.
+
+-- OtpCodeRepository.findValidOtpByPhoneNumber / deleteUnusedByPhoneNumber / consumeOtp / resendOtp,
+-- et côté rappels claimOtpForWhatsappReminder / markSmsReminderSentForPhone (un seul numéro)
+CREATE INDEX idx_otp_codes_phone_unused ON otp_codes (phone_number, expires_at) WHERE used = false;
+
+-- OtpCodeRepository.deleteExpiredBefore
+CREATE INDEX idx_otp_codes_expires_at ON otp_codes (expires_at);
+
+-- OtpCodeRepository.claimOtpsForWhatsappReminder / findPendingReminders :
+-- ne contient que les OTP en attente de rappel, parcouru dans l'ordre des id. Le filtre de partition
+-- (hashtext(phone_number) % :shardCount) dépend d'un paramètre et ne peut pas être indexé : il est évalué
+-- sur ces seules lignes en attente, dont la ligne est de toute façon lue pour le verrou FOR UPDATE
+CREATE INDEX idx_otp_codes_reminder_pending ON otp_codes (id) INCLUDE (whatsapp_sent_at, expires_at)
+    WHERE used = false AND sms_reminder_sent_at IS NULL AND whatsapp_sent_at IS NOT NULL;
+
+-- RegistrationSessionRepository.deleteExpiredBefore
+CREATE INDEX idx_registration_sessions_expires_at ON registration_sessions (expires_at);
+
+-- RegistrationSessionRepository.deleteCompleted
+CREATE INDEX idx_registration_sessions_completed ON registration_sessions (expires_at) WHERE completed = true;
+
+-- OutboundMessageRepository.findClaimable
+CREATE INDEX idx_outbound_messages_claimable ON outbound_messages (next_attempt_at)
+    WHERE status IN ('PENDING', 'SENDING');
+
+-- OutboundMessageRepository.deleteFinishedBefore
+CREATE INDEX idx_outbound_messages_finished ON outbound_messages (created_at)
+    WHERE status IN ('SENT', 'FAILED');
@@ -0,0 +1,8 @@
+-- JdbcRateLimiter (rate-limit.backend=jdbc) : instant théorique d'arrivée (epoch ms) par clé
+CREATE TABLE rate_limit_buckets (
+    bucket_key VARCHAR(255) PRIMARY KEY,
+    tat        BIGINT       NOT NULL
+);
+
+-- JdbcRateLimiter.deleteIdleBuckets
+CREATE INDEX idx_rate_limit_buckets_tat ON rate_limit_buckets (tat);
@@ -0,0 +1,6 @@
+-- État de la finalisation (UserRegistrationService.completeRegistration, mode synchrone ou asynchrone)
+ALTER TABLE registration_sessions
+    ADD COLUMN completion_status     VARCHAR(255),
+    ADD COLUMN completion_started_at TIMESTAMP(6),
+    ADD COLUMN keycloak_user_id      VARCHAR(255),
+    ADD COLUMN completion_error      VARCHAR(1000);
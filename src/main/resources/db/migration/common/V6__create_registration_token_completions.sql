@@ -0,0 +1,12 @@
+-- SignedTokenRegistrationSessionStore (registration.session.mode=token) : jetons consommés par la finalisation
+CREATE TABLE registration_token_completions (
+    token_id         VARCHAR(255)  PRIMARY KEY,
+    status           VARCHAR(255)  NOT NULL,
+    started_at       TIMESTAMP(6)  NOT NULL,
+    keycloak_user_id VARCHAR(255),
+    error            VARCHAR(1000),
+    expires_at       TIMESTAMP(6)  NOT NULL
+);
+
+-- RegistrationTokenCompletionRepository.deleteExpiredBefore
+CREATE INDEX idx_registration_token_completions_expires_at ON registration_token_completions (expires_at);
@@ -0,0 +1,5 @@
+-- Identifiants users alloués par blocs de 50 (séquence "pooled" côté Hibernate) : permet le batching JDBC des insertions
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+
+-- Comptes importés en masse : pas de mot de passe local, il est défini dans Keycloak
+ALTER TABLE users ALTER COLUMN password DROP NOT NULL;
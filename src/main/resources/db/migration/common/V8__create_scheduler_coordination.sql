@@ -0,0 +1,13 @@
+-- ClusterMembership : instances vivantes (battement de cœur), base du partage des rappels
+CREATE TABLE scheduler_nodes (
+    node_id      VARCHAR(100) PRIMARY KEY,
+    started_at   TIMESTAMP(6) NOT NULL,
+    heartbeat_at TIMESTAMP(6) NOT NULL
+);
+
+-- SchedulerLeases : bail exclusif par tâche planifiée (nettoyage)
+CREATE TABLE scheduler_leases (
+    name       VARCHAR(100) PRIMARY KEY,
+    owner      VARCHAR(100) NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL
+);
@@ -0,0 +1,7 @@
+-- Statut de remise du message WhatsApp de l'OTP, reçu par le callback Twilio (DeliveryStatusService)
+ALTER TABLE otp_codes ADD COLUMN whatsapp_message_sid VARCHAR(64);
+ALTER TABLE otp_codes ADD COLUMN whatsapp_status VARCHAR(20);
+
+-- DeliveryStatusService.flush : mise à jour par SID
+CREATE INDEX idx_otp_codes_whatsapp_message_sid ON otp_codes (whatsapp_message_sid)
+    WHERE whatsapp_message_sid IS NOT NULL;
@@ -0,0 +1,36 @@
+-- Schéma partitionné pour otp_codes et registration_sessions, appliqué à la place de
+-- standard/V2 lorsque db.partitioning.enabled=true. Les partitions journalières sont
+-- ensuite créées à l'avance et supprimées par PartitionMaintenanceService.
+-- Sur une table partitionnée, la clé primaire et les contraintes d'unicité doivent inclure
+-- la clé de partition (expires_at).
+
+CREATE TABLE otp_codes (
+    id                   BIGSERIAL    NOT NULL,
+    phone_number         VARCHAR(255) NOT NULL,
+    code                 VARCHAR(255) NOT NULL,
+    expires_at           TIMESTAMP(6) NOT NULL,
+    used                 BOOLEAN      NOT NULL,
+    created_at           TIMESTAMP(6),
+    whatsapp_sent_at     TIMESTAMP(6),
+    sms_reminder_sent_at TIMESTAMP(6),
+    PRIMARY KEY (id, expires_at)
+) PARTITION BY RANGE (expires_at);
+
+CREATE TABLE otp_codes_default PARTITION OF otp_codes DEFAULT;
+
+CREATE TABLE registration_sessions (
+    id           BIGSERIAL    NOT NULL,
+    session_id   VARCHAR(255) NOT NULL,
+    first_name   VARCHAR(255) NOT NULL,
+    last_name    VARCHAR(255) NOT NULL,
+    email        VARCHAR(255) NOT NULL,
+    phone_number VARCHAR(255) NOT NULL,
+    otp_verified BOOLEAN      NOT NULL,
+    completed    BOOLEAN      NOT NULL,
+    expires_at   TIMESTAMP(6) NOT NULL,
+    created_at   TIMESTAMP(6),
+    PRIMARY KEY (id, expires_at),
+    UNIQUE (session_id, expires_at)
+) PARTITION BY RANGE (expires_at);
+
+CREATE TABLE registration_sessions_default PARTITION OF registration_sessions DEFAULT;
@@ -0,0 +1,23 @@
+CREATE TABLE otp_codes (
+    id                   BIGSERIAL    PRIMARY KEY,
+    phone_number         VARCHAR(255) NOT NULL,
+    code                 VARCHAR(255) NOT NULL,
+    expires_at           TIMESTAMP(6) NOT NULL,
+    used                 BOOLEAN      NOT NULL,
+    created_at           TIMESTAMP(6),
+    whatsapp_sent_at     TIMESTAMP(6),
+    sms_reminder_sent_at TIMESTAMP(6)
+);
+
+CREATE TABLE registration_sessions (
+    id           BIGSERIAL    PRIMARY KEY,
+    session_id   VARCHAR(255) NOT NULL UNIQUE,
+    first_name   VARCHAR(255) NOT NULL,
+    last_name    VARCHAR(255) NOT NULL,
+    email        VARCHAR(255) NOT NULL,
+    phone_number VARCHAR(255) NOT NULL,
+    otp_verified BOOLEAN      NOT NULL,
+    completed    BOOLEAN      NOT NULL,
+    expires_at   TIMESTAMP(6) NOT NULL,
+    created_at   TIMESTAMP(6)
+);
@@ -0,0 +1,21 @@
+package com.exemple.testotp;
+
+import com.exemple.testotp.loadtest.LoadTestStubsConfiguration;
+import org.springframework.boot.SpringApplication;
+
+import java.util.Arrays;
+
+/**
+ * Démarre l'application avec Twilio et Keycloak remplacés par des stubs locaux (profil {@code loadtest}) :
+ * {@code ./mvnw spring-boot:test-run}
+ */
+public class TestTestotpApplication {
+
+    public static void main(String[] args) {
+        String[] arguments = Arrays.copyOf(args, args.length + 1);
+        arguments[args.length] = "--spring.profiles.include=loadtest";
+        SpringApplication.from(TestotpApplication::main)
+                .with(LoadTestStubsConfiguration.class)
+                .run(arguments);
+    }
+}
@@ -0,0 +1,107 @@
+package com.exemple.testotp.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private static final long MAX_LAG_MILLIS = 500;
+
+    private final DataSource primary = mock(DataSource.class);
+
+    @Test
+    void primaryIsUsedUntilTheFirstLagCheck() throws Exception {
+        ReplicaRoutingDataSource routing = routing(List.of(replica(0.0)));
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("primary");
+    }
+
+    @Test
+    void readsAreSpreadAcrossUpToDateReplicas() throws Exception {
+        ReplicaRoutingDataSource routing = routing(List.of(replica(0.0), replica(120.0)));
+        routing.refreshReplicationLag();
+
+        assertThat(List.of(routing.determineCurrentLookupKey(), routing.determineCurrentLookupKey()))
+                .containsExactlyInAnyOrder("replica-0", "replica-1");
+    }
+
+    @Test
+    void laggingReplicaIsSkipped() throws Exception {
+        ReplicaRoutingDataSource routing = routing(List.of(replica(5_000.0), replica(0.0)));
+        routing.refreshReplicationLag();
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica-1");
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica-1");
+    }
+
+    @Test
+    void replicaDisconnectedFromThePrimaryFallsBackToThePrimary() throws Exception {
+        // Récepteur WAL arrêté : la requête de retard renvoie NULL
+        ReplicaRoutingDataSource routing = routing(List.of(replica(null)));
+        routing.refreshReplicationLag();
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("primary");
+    }
+
+    @Test
+    void unreachableReplicaFallsBackToThePrimary() throws Exception {
+        DataSource unreachable = mock(DataSource.class);
+        when(unreachable.getConnection()).thenThrow(new SQLException("connexion refusée"));
+        ReplicaRoutingDataSource routing = routing(List.of(unreachable));
+        routing.refreshReplicationLag();
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("primary");
+    }
+
+    @Test
+    void replicaIsUsedAgainOnceItCatchesUp() throws Exception {
+        DataSource replica = replica(5_000.0);
+        ReplicaRoutingDataSource routing = routing(List.of(replica));
+        routing.refreshReplicationLag();
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("primary");
+
+        stubLag(replica, 10.0);
+        routing.refreshReplicationLag();
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica-0");
+    }
+
+    private ReplicaRoutingDataSource routing(List<DataSource> replicas) {
+        return new ReplicaRoutingDataSource(primary, replicas, MAX_LAG_MILLIS, new SimpleMeterRegistry());
+    }
+
+    private static DataSource replica(Double lagMillis) throws SQLException {
+        DataSource replica = mock(DataSource.class);
+        stubLag(replica, lagMillis);
+        return replica;
+    }
+
+    // Une ligne, une colonne : le retard mesuré, ou NULL
+    private static void stubLag(DataSource replica, Double lagMillis) throws SQLException {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(1);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(resultSet.getDouble(1)).thenReturn(lagMillis == null ? 0.0 : lagMillis);
+        when(resultSet.wasNull()).thenReturn(lagMillis == null);
+        Statement statement = mock(Statement.class);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(replica.getConnection()).thenReturn(connection);
+    }
+}
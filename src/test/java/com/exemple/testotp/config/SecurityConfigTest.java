@@ -0,0 +1,54 @@
+package com.exemple.testotp.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Accès aux endpoints actuator : health public, métriques réservées au compte de collecte.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class SecurityConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void healthIsPublic() throws Exception {
+        mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+    }
+
+    @Test
+    void prometheusRequiresTheScrapeAccount() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/metrics")).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void wrongScrapePasswordIsRejected() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION, basic("prometheus", "mauvais")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void scrapeAccountReadsMetrics() throws Exception {
+        // L'export Prometheus n'est pas actif dans les tests : même règle d'accès que metrics
+        mockMvc.perform(get("/actuator/metrics").header(HttpHeaders.AUTHORIZATION, basic("prometheus", "collecte-de-test")))
+                .andExpect(status().isOk());
+    }
+
+    private static String basic(String username, String password) {
+        return "Basic " + Base64.getEncoder()
+                .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,86 @@
+package com.exemple.testotp.controller;
+
+import com.exemple.testotp.dto.PasswordSetupDto;
+import com.exemple.testotp.dto.RegistrationResponseDto;
+import com.exemple.testotp.exception.GlobalExceptionHandler;
+import com.exemple.testotp.exception.RegistrationBusyException;
+import com.exemple.testotp.exception.SessionNotFoundException;
+import com.exemple.testotp.service.UserRegistrationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AuthControllerTest {
+
+    private static final String COMPLETE_BODY =
+            "{\"sessionId\":\"session-1\",\"password\":\"motdepasse\",\"confirmPassword\":\"motdepasse\"}";
+
+    private final UserRegistrationService userRegistrationService = mock(UserRegistrationService.class);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new AuthController(userRegistrationService))
+            .setControllerAdvice(new GlobalExceptionHandler())
+            .defaultRequest(get("/").accept(MediaType.APPLICATION_JSON))
+            .build();
+
+    @Test
+    void synchronousCompletionReturnsCreated() throws Exception {
+        when(userRegistrationService.completeRegistration(any(PasswordSetupDto.class)))
+                .thenReturn(new RegistrationResponseDto(null, "Compte créé avec succès", "COMPLETED"));
+
+        mockMvc.perform(post("/api/auth/register/complete").contentType(MediaType.APPLICATION_JSON).content(COMPLETE_BODY))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data.nextStep").value("COMPLETED"));
+    }
+
+    @Test
+    void asynchronousCompletionReturnsAcceptedWithTheJobId() throws Exception {
+        when(userRegistrationService.completeRegistration(any(PasswordSetupDto.class)))
+                .thenReturn(new RegistrationResponseDto("session-1", "Création du compte en cours", "PROCESSING"));
+
+        mockMvc.perform(post("/api/auth/register/complete").contentType(MediaType.APPLICATION_JSON).content(COMPLETE_BODY))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.data.sessionId").value("session-1"))
+                .andExpect(jsonPath("$.data.nextStep").value("PROCESSING"));
+    }
+
+    @Test
+    void fullCompletionQueueReturnsServiceUnavailableWithRetryAfter() throws Exception {
+        when(userRegistrationService.completeRegistration(any(PasswordSetupDto.class)))
+                .thenThrow(new RegistrationBusyException("Service surchargé, réessayez plus tard"));
+
+        mockMvc.perform(post("/api/auth/register/complete").contentType(MediaType.APPLICATION_JSON).content(COMPLETE_BODY))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER))
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void statusEndpointReportsTheCurrentStep() throws Exception {
+        when(userRegistrationService.getRegistrationStatus("session-1"))
+                .thenReturn(new RegistrationResponseDto("session-1", "Création du compte en cours", "PROCESSING"));
+
+        mockMvc.perform(get("/api/auth/register/status/session-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.nextStep").value("PROCESSING"));
+    }
+
+    @Test
+    void statusEndpointReturnsNotFoundForAnUnknownSession() throws Exception {
+        when(userRegistrationService.getRegistrationStatus("inconnue"))
+                .thenThrow(new SessionNotFoundException("Session non trouvée"));
+
+        mockMvc.perform(get("/api/auth/register/status/inconnue"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+}
@@ -0,0 +1,94 @@
+package com.exemple.testotp.controller;
+
+import com.exemple.testotp.exception.GlobalExceptionHandler;
+import com.exemple.testotp.service.DeliveryStatusService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class TwilioStatusControllerTest {
+
+    private static final String AUTH_TOKEN = "jeton-twilio-de-test";
+    private static final String CALLBACK_URL = "https://otp.exemple.com/api/twilio/status";
+    private static final Map<String, String> PARAMS = Map.of("MessageSid", "SM1", "MessageStatus", "delivered");
+
+    private final DeliveryStatusService deliveryStatusService = mock(DeliveryStatusService.class);
+
+    @Test
+    void signedCallbackIsRecorded() throws Exception {
+        mockMvc(CALLBACK_URL).perform(callback().header("X-Twilio-Signature", sign(CALLBACK_URL, PARAMS)))
+                .andExpect(status().isNoContent());
+
+        verify(deliveryStatusService).recordStatus("SM1", "delivered");
+    }
+
+    @Test
+    void missingSignatureIsRejected() throws Exception {
+        mockMvc(CALLBACK_URL).perform(callback()).andExpect(status().isForbidden());
+
+        verify(deliveryStatusService, never()).recordStatus(any(), any());
+    }
+
+    @Test
+    void tamperedCallbackIsRejected() throws Exception {
+        String signature = sign(CALLBACK_URL, Map.of("MessageSid", "SM1", "MessageStatus", "failed"));
+
+        mockMvc(CALLBACK_URL).perform(callback().header("X-Twilio-Signature", signature))
+                .andExpect(status().isForbidden());
+
+        verify(deliveryStatusService, never()).recordStatus(any(), any());
+    }
+
+    @Test
+    void callbackSignedForAnotherUrlIsRejected() throws Exception {
+        String signature = sign("https://autre.exemple.com/api/twilio/status", PARAMS);
+
+        mockMvc(CALLBACK_URL).perform(callback().header("X-Twilio-Signature", signature))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void callbacksAreRefusedWhenNoUrlIsConfigured() throws Exception {
+        mockMvc("").perform(callback().header("X-Twilio-Signature", sign(CALLBACK_URL, PARAMS)))
+                .andExpect(status().isForbidden());
+
+        verify(deliveryStatusService, never()).recordStatus(any(), any());
+    }
+
+    private MockMvc mockMvc(String callbackUrl) {
+        return MockMvcBuilders.standaloneSetup(new TwilioStatusController(deliveryStatusService, AUTH_TOKEN, callbackUrl))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    private static MockHttpServletRequestBuilder callback() {
+        MockHttpServletRequestBuilder request = post("/api/twilio/status").contentType(MediaType.APPLICATION_FORM_URLENCODED);
+        PARAMS.forEach(request::param);
+        return request;
+    }
+
+    // Signature Twilio : HMAC-SHA1 de l'URL suivie des paramètres triés par nom (nom puis valeur)
+    private static String sign(String url, Map<String, String> params) throws Exception {
+        StringBuilder data = new StringBuilder(url);
+        new TreeMap<>(params).forEach((name, value) -> data.append(name).append(value));
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(AUTH_TOKEN.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+        return Base64.getEncoder().encodeToString(mac.doFinal(data.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,60 @@
+package com.exemple.testotp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Simule les endpoints de l'API d'administration Keycloak utilisés par l'application :
+ * obtention du jeton admin, création d'utilisateur et import partiel.
+ */
+class KeycloakStub extends UpstreamStub {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    KeycloakStub(int port, Behaviour behaviour) {
+        super("keycloak", port, behaviour);
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = exchange.getRequestBody().readAllBytes();
+
+        if (path.endsWith("/protocol/openid-connect/token")) {
+            respond(exchange, 200, "{\"access_token\":\"stub-token\",\"expires_in\":300,"
+                    + "\"refresh_expires_in\":0,\"token_type\":\"Bearer\",\"scope\":\"profile email\"}");
+        } else if ("POST".equals(exchange.getRequestMethod()) && path.matches("/admin/realms/[^/]+/users")) {
+            exchange.getResponseHeaders().set("Location", "http://localhost" + path + "/" + UUID.randomUUID());
+            respond(exchange, 201, "");
+        } else if ("POST".equals(exchange.getRequestMethod()) && path.matches("/admin/realms/[^/]+/partialImport")) {
+            respond(exchange, 200, partialImport(objectMapper.readTree(body)));
+        } else {
+            respond(exchange, 404, "{\"error\":\"not_found\"}");
+        }
+    }
+
+    private String partialImport(JsonNode request) throws IOException {
+        ObjectNode response = objectMapper.createObjectNode();
+        ArrayNode results = response.putArray("results");
+        for (JsonNode user : request.path("users")) {
+            results.addObject()
+                    .put("action", "ADDED")
+                    .put("resourceType", "USER")
+                    .put("resourceName", user.path("username").asText())
+                    .put("id", UUID.randomUUID().toString());
+        }
+        response.put("added", results.size()).put("skipped", 0).put("overwritten", 0);
+        return objectMapper.writeValueAsString(response);
+    }
+
+    @Override
+    protected String throttledBody() {
+        return "{\"error\":\"too_many_requests\"}";
+    }
+}
@@ -0,0 +1,50 @@
+package com.exemple.testotp.loadtest;
+
+import com.exemple.testotp.config.TwilioConfig;
+import com.twilio.Twilio;
+import com.twilio.http.TwilioRestClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Remplace Twilio et l'API d'administration Keycloak par des stubs HTTP locaux (profil {@code loadtest}).
+ * Voir {@code application-loadtest.properties} pour la latence, le taux d'erreur et le débit simulés.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+@Profile("loadtest")
+public class LoadTestStubsConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    TwilioStub twilioStub(@Value("${loadtest.stub.twilio.port:18081}") int port,
+                          @Value("${loadtest.stub.twilio.latency.ms:150}") long latencyMs,
+                          @Value("${loadtest.stub.twilio.jitter.ms:100}") long jitterMs,
+                          @Value("${loadtest.stub.twilio.error-rate:0.0}") double errorRate,
+                          @Value("${loadtest.stub.twilio.throttle.rps:0}") int throttleRps,
+                          @Value("${loadtest.stub.twilio.whatsapp.error-rate:0.0}") double whatsappErrorRate) {
+        return new TwilioStub(port, new UpstreamStub.Behaviour(latencyMs, jitterMs, errorRate, throttleRps), whatsappErrorRate);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    KeycloakStub keycloakStub(@Value("${loadtest.stub.keycloak.port:18080}") int port,
+                              @Value("${loadtest.stub.keycloak.latency.ms:80}") long latencyMs,
+                              @Value("${loadtest.stub.keycloak.jitter.ms:40}") long jitterMs,
+                              @Value("${loadtest.stub.keycloak.error-rate:0.0}") double errorRate,
+                              @Value("${loadtest.stub.keycloak.throttle.rps:0}") int throttleRps) {
+        return new KeycloakStub(port, new UpstreamStub.Behaviour(latencyMs, jitterMs, errorRate, throttleRps));
+    }
+
+    // TwilioConfig.setup() appelle Twilio.init, qui réinitialise le client : il doit passer avant
+    @Bean
+    TwilioRestClient stubTwilioRestClient(TwilioStub twilioStub,
+                                          TwilioConfig twilioConfig,
+                                          @Value("${twilio.account.sid}") String accountSid,
+                                          @Value("${twilio.auth.token}") String authToken) {
+        TwilioRestClient client = new TwilioRestClient.Builder(accountSid, authToken)
+                .httpClient(new StubTwilioHttpClient("http://127.0.0.1:" + twilioStub.getPort()))
+                .build();
+        Twilio.setRestClient(client);
+        return client;
+    }
+}
@@ -0,0 +1,233 @@
+package com.exemple.testotp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Générateur de charge du parcours d'inscription : /register/start → /register/verify-otp → /register/complete,
+ * lancé à débit cible (modèle ouvert) contre une application démarrée avec le profil {@code loadtest}.
+ * Le code OTP est relu sur le stub Twilio. Affiche débit, erreurs et p50 / p99 / p99.9 par endpoint ;
+ * la latence de /register/start est mesurée depuis l'instant d'arrivée prévu (sans omission coordonnée).
+ * <p>
+ * Arguments (clé=valeur) : {@code baseUrl}, {@code twilioStubUrl}, {@code rate} (parcours/s),
+ * {@code duration} (s), {@code maxInFlight}.
+ */
+public final class RegistrationLoadGenerator {
+
+    private static final Pattern OTP_PATTERN = Pattern.compile("\\b(\\d{6})\\b");
+    // complete-async : de l'envoi de /register/complete à l'état COMPLETED (finalisation asynchrone)
+    private static final String[] ENDPOINTS = {"start", "verify-otp", "complete", "complete-async"};
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Histogram> latencies = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> errors = new LinkedHashMap<>();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final String baseUrl;
+    private final String twilioStubUrl;
+    private final long runId = System.currentTimeMillis() % 100_000;
+
+    private RegistrationLoadGenerator(String baseUrl, String twilioStubUrl) {
+        this.baseUrl = baseUrl;
+        this.twilioStubUrl = twilioStubUrl;
+        for (String endpoint : ENDPOINTS) {
+            latencies.put(endpoint, new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3));
+            errors.put(endpoint, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                options.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+        double rate = Double.parseDouble(options.getOrDefault("rate", "20"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("maxInFlight", "2000"));
+
+        RegistrationLoadGenerator generator = new RegistrationLoadGenerator(
+                options.getOrDefault("baseUrl", "http://localhost:8081"),
+                options.getOrDefault("twilioStubUrl", "http://127.0.0.1:18081"));
+        generator.run(rate, durationSeconds, maxInFlight);
+    }
+
+    private void run(double rate, int durationSeconds, int maxInFlight) throws InterruptedException {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long total = (long) (rate * durationSeconds);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        System.out.printf("Charge : %.1f parcours/s pendant %d s (%d parcours) sur %s%n", rate, durationSeconds, total, baseUrl);
+
+        long begin = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long intendedStart = begin + i * intervalNanos;
+                long wait = intendedStart - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (!inFlight.tryAcquire()) {
+                    dropped.incrementAndGet();
+                    continue;
+                }
+                long sequence = i;
+                executor.execute(() -> {
+                    try {
+                        runFlow(sequence, intendedStart);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        report(System.nanoTime() - begin);
+    }
+
+    private void runFlow(long sequence, long intendedStart) {
+        String phoneNumber = String.format("+3367%03d%05d", runId % 1000, sequence % 100_000);
+        String email = "load-" + runId + "-" + sequence + "@loadtest.local";
+
+        JsonNode start = call("start", intendedStart, "/api/auth/register/start", Map.of(
+                "firstName", "Charge", "lastName", "Test" + sequence, "email", email, "phoneNumber", phoneNumber));
+        if (start == null) {
+            return;
+        }
+        String sessionId = start.path("data").path("sessionId").asText();
+
+        String otpCode = awaitOtp(phoneNumber);
+        if (otpCode == null) {
+            errors.get("verify-otp").incrementAndGet();
+            return;
+        }
+        JsonNode verified = call("verify-otp", System.nanoTime(), "/api/auth/register/verify-otp",
+                Map.of("sessionId", sessionId, "otpCode", otpCode));
+        if (verified == null) {
+            return;
+        }
+        // En mode jeton (registration.session.mode=token), la vérification émet un nouvel identifiant
+        sessionId = verified.path("data").path("sessionId").asText(sessionId);
+        long completeStart = System.nanoTime();
+        JsonNode complete = call("complete", completeStart, "/api/auth/register/complete",
+                Map.of("sessionId", sessionId, "password", "Charge!2024", "confirmPassword", "Charge!2024"));
+        if (complete == null) {
+            return;
+        }
+        // Finalisation asynchrone (202) : attendre la fin via l'endpoint d'état
+        if ("PROCESSING".equals(complete.path("data").path("nextStep").asText()) && !awaitCompletion(sessionId, completeStart)) {
+            errors.get("complete-async").incrementAndGet();
+            return;
+        }
+        completed.incrementAndGet();
+    }
+
+    private boolean awaitCompletion(String sessionId, long completeStart) {
+        URI uri = URI.create(baseUrl + "/api/auth/register/status/" + sessionId);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(50);
+                HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                String nextStep = objectMapper.readTree(response.body()).path("data").path("nextStep").asText();
+                if ("COMPLETED".equals(nextStep)) {
+                    latencies.get("complete-async")
+                            .recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - completeStart));
+                    return true;
+                }
+                if (!"PROCESSING".equals(nextStep)) {
+                    return false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private JsonNode call(String endpoint, long startNanos, String path, Map<String, String> body) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            latencies.get(endpoint).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+            if (response.statusCode() >= 300) {
+                errors.get(endpoint).incrementAndGet();
+                return null;
+            }
+            return objectMapper.readTree(response.body());
+        } catch (Exception e) {
+            errors.get(endpoint).incrementAndGet();
+            return null;
+        }
+    }
+
+    // L'OTP part par l'outbox : il apparaît sur le stub Twilio après le prochain passage du dispatcher
+    private String awaitOtp(String phoneNumber) {
+        URI uri = URI.create(twilioStubUrl + "/__stub/messages?to=" + URLEncoder.encode(phoneNumber, StandardCharsets.UTF_8));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            try {
+                HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    Matcher matcher = OTP_PATTERN.matcher(response.body());
+                    if (matcher.find()) {
+                        return matcher.group(1);
+                    }
+                }
+                Thread.sleep(100 + ThreadLocalRandom.current().nextInt(50));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%nDurée : %.1f s, parcours terminés : %d (%.1f/s), non lancés (maxInFlight) : %d%n",
+                seconds, completed.get(), completed.get() / seconds, dropped.get());
+        System.out.printf("%-12s %8s %8s %10s %10s %10s %10s%n", "endpoint", "requêtes", "erreurs", "req/s", "p50 ms", "p99 ms", "p99.9 ms");
+        latencies.forEach((endpoint, histogram) -> System.out.printf("%-12s %8d %8d %10.1f %10.1f %10.1f %10.1f%n",
+                endpoint,
+                histogram.getTotalCount(),
+                errors.get(endpoint).get(),
+                histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0));
+    }
+}
@@ -0,0 +1,48 @@
+package com.exemple.testotp.loadtest;
+
+import com.twilio.http.HttpClient;
+import com.twilio.http.Request;
+import com.twilio.http.Response;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Client HTTP du SDK Twilio redirigeant les appels vers {@link TwilioStub} au lieu de api.twilio.com.
+ */
+class StubTwilioHttpClient extends HttpClient {
+
+    private final String baseUrl;
+    private final java.net.http.HttpClient delegate = java.net.http.HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    StubTwilioHttpClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public Response makeRequest(Request request) {
+        URL original = request.constructURL();
+        String body = request.encodeFormBody();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + original.getFile()))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .method(request.getMethod().toString(), body.isEmpty()
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body));
+        try {
+            HttpResponse<String> response = delegate.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+            return new Response(response.body(), response.statusCode());
+        } catch (IOException e) {
+            throw new IllegalStateException("Stub Twilio injoignable: " + baseUrl, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Appel au stub Twilio interrompu", e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.exemple.testotp.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simule l'API Twilio Messages et conserve le dernier message reçu par destinataire,
+ * consultable via {@code GET /__stub/messages?to=<numéro>} (utilisé par le générateur de charge).
+ * {@code whatsappErrorRate} simule une panne du seul canal WhatsApp.
+ */
+class TwilioStub extends UpstreamStub {
+
+    private final Map<String, String> lastMessages = new ConcurrentHashMap<>();
+    private final double whatsappErrorRate;
+
+    TwilioStub(int port, Behaviour behaviour, double whatsappErrorRate) {
+        super("twilio", port, behaviour);
+        this.whatsappErrorRate = whatsappErrorRate;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if ("GET".equals(exchange.getRequestMethod()) && path.equals("/__stub/messages")) {
+            String to = parseForm(exchange.getRequestURI().getRawQuery()).get("to");
+            String body = to == null ? null : lastMessages.get(to);
+            respond(exchange, body == null ? 404 : 200, body == null ? "" : body);
+            return;
+        }
+
+        if (!"POST".equals(exchange.getRequestMethod()) || !path.endsWith("/Messages.json")) {
+            respond(exchange, 404, "{\"code\":20404,\"message\":\"Not Found\",\"status\":404}");
+            return;
+        }
+
+        Map<String, String> form = parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        if (form.getOrDefault("To", "").startsWith("whatsapp:") && ThreadLocalRandom.current().nextDouble() < whatsappErrorRate) {
+            respond(exchange, 503, "{\"code\":20503,\"message\":\"Service Unavailable\",\"status\":503}");
+            return;
+        }
+        String to = form.getOrDefault("To", "").replace("whatsapp:", "");
+        lastMessages.put(to, form.getOrDefault("Body", ""));
+
+        String sid = "SM" + UUID.randomUUID().toString().replace("-", "");
+        respond(exchange, 201, "{\"sid\":\"" + sid + "\",\"status\":\"queued\",\"to\":\"" + form.get("To") + "\"}");
+    }
+
+    @Override
+    protected String throttledBody() {
+        return "{\"code\":20429,\"message\":\"Too Many Requests\",\"more_info\":\"\",\"status\":429}";
+    }
+
+    private static Map<String, String> parseForm(String encoded) {
+        Map<String, String> values = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return values;
+        }
+        for (String pair : encoded.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                values.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return values;
+    }
+}
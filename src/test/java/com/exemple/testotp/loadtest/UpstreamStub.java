@@ -0,0 +1,116 @@
+package com.exemple.testotp.loadtest;
+
+import com.exemple.testotp.service.LocalRateLimiter;
+import com.exemple.testotp.service.RateLimiter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Serveur HTTP local simulant un service amont, avec injection de latence, d'erreurs et de
+ * limitation de débit (réponse 429 au-delà de {@code throttleRps}).
+ */
+@Slf4j
+abstract class UpstreamStub {
+
+    /**
+     * @param latencyMs      latence ajoutée à chaque réponse
+     * @param jitterMs       variation aléatoire ajoutée à la latence
+     * @param errorRate      proportion de réponses 500 (0 à 1)
+     * @param throttleRps    débit maximal accepté, 0 pour illimité
+     */
+    record Behaviour(long latencyMs, long jitterMs, double errorRate, int throttleRps) {
+    }
+
+    private final String name;
+    private final int port;
+    private final Behaviour behaviour;
+    private final RateLimiter throttle = new LocalRateLimiter();
+    private final RateLimiter.Policy throttlePolicy;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    UpstreamStub(String name, int port, Behaviour behaviour) {
+        this.name = name;
+        this.port = port;
+        this.behaviour = behaviour;
+        this.throttlePolicy = behaviour.throttleRps() > 0
+                ? new RateLimiter.Policy(name, behaviour.throttleRps(), Duration.ofSeconds(1))
+                : null;
+    }
+
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::dispatch);
+        server.start();
+        log.info("Stub {} démarré sur le port {} ({})", name, getPort(), behaviour);
+    }
+
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    protected abstract void handle(HttpExchange exchange) throws IOException;
+
+    /**
+     * Réponse renvoyée lorsque le débit maximal est dépassé.
+     */
+    protected abstract String throttledBody();
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (exchange.getRequestURI().getPath().startsWith("/__stub/")) {
+                handle(exchange);
+                return;
+            }
+
+            if (throttlePolicy != null && throttle.tryAcquire(name, throttlePolicy) > 0) {
+                respond(exchange, 429, throttledBody());
+                return;
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = behaviour.latencyMs() + (behaviour.jitterMs() > 0 ? random.nextLong(behaviour.jitterMs()) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            if (random.nextDouble() < behaviour.errorRate()) {
+                respond(exchange, 500, "{\"error\":\"injected\"}");
+                return;
+            }
+            handle(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.exemple.testotp.scheduler;
+
+import com.exemple.testotp.service.OtpService;
+import com.exemple.testotp.service.OutboxService;
+import com.exemple.testotp.service.PartitionMaintenanceService;
+import com.exemple.testotp.service.RegistrationSessionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CleanupSchedulerTest {
+
+    private final OtpService otpService = mock(OtpService.class);
+    private final RegistrationSessionService sessionService = mock(RegistrationSessionService.class);
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final PartitionMaintenanceService partitionMaintenanceService = mock(PartitionMaintenanceService.class);
+    private final SchedulerLeases schedulerLeases = mock(SchedulerLeases.class);
+    private final CleanupScheduler scheduler = new CleanupScheduler(otpService, sessionService, outboxService,
+            partitionMaintenanceService, schedulerLeases);
+
+    @BeforeEach
+    void acquireLease() {
+        when(schedulerLeases.tryAcquire(eq("cleanup"), any())).thenReturn(true);
+    }
+
+    @Test
+    void rowsAreDeletedWithoutPartitioning() {
+        when(sessionService.isStoredInSessionTable()).thenReturn(true);
+
+        scheduler.cleanupExpiredData();
+
+        verify(otpService).cleanupExpiredOtps();
+        verify(sessionService).cleanupExpiredSessions();
+        verify(sessionService).cleanupCompletedSessions();
+        verify(outboxService).cleanupFinishedMessages();
+    }
+
+    @Test
+    void partitionedSessionTableIsLeftToPartitionDrops() {
+        when(partitionMaintenanceService.isEnabled()).thenReturn(true);
+        when(sessionService.isStoredInSessionTable()).thenReturn(true);
+
+        scheduler.cleanupExpiredData();
+
+        verify(partitionMaintenanceService).dropExpiredPartitions();
+        verify(otpService, never()).cleanupExpiredOtps();
+        verify(sessionService, never()).cleanupExpiredSessions();
+        verify(sessionService, never()).cleanupCompletedSessions();
+    }
+
+    @Test
+    void tokenCompletionsAreCleanedOnThePartitionedSchema() {
+        when(partitionMaintenanceService.isEnabled()).thenReturn(true);
+        when(sessionService.isStoredInSessionTable()).thenReturn(false);
+
+        scheduler.cleanupExpiredData();
+
+        verify(partitionMaintenanceService).dropExpiredPartitions();
+        verify(sessionService).cleanupExpiredSessions();
+        verify(sessionService).cleanupCompletedSessions();
+    }
+
+    @Test
+    void anotherInstanceHoldingTheLeaseSkipsTheRun() {
+        when(schedulerLeases.tryAcquire(eq("cleanup"), any())).thenReturn(false);
+
+        scheduler.cleanupExpiredData();
+
+        verifyNoInteractions(otpService, sessionService, outboxService, partitionMaintenanceService);
+    }
+}
@@ -0,0 +1,91 @@
+package com.exemple.testotp.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    private final Map<String, Long> firedAt = new ConcurrentHashMap<>();
+    private CountDownLatch fired;
+    private HierarchicalTimingWheel<String> wheel;
+
+    @AfterEach
+    void closeWheel() {
+        if (wheel != null) {
+            wheel.close();
+        }
+    }
+
+    @Test
+    void neverFiresBeforeTheDeadline() throws InterruptedException {
+        // Petite roue : les échéances lointaines passent par les niveaux supérieurs
+        start(200);
+        long now = System.currentTimeMillis();
+        Map<String, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            long deadline = now + 5 + i * 7L;
+            deadlines.put("otp-" + i, deadline);
+            wheel.schedule("otp-" + i, deadline);
+        }
+
+        assertThat(fired.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(firedAt).hasSize(200);
+        deadlines.forEach((key, deadline) -> assertThat(firedAt.get(key)).as(key).isGreaterThanOrEqualTo(deadline));
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void firesAPastDeadlineImmediately() {
+        start(1);
+
+        wheel.schedule("otp", System.currentTimeMillis() - 1000);
+
+        assertThat(firedAt).containsKey("otp");
+    }
+
+    @Test
+    void cancelledEntriesNeverFire() throws InterruptedException {
+        start(1);
+        long now = System.currentTimeMillis();
+        wheel.schedule("cancelled", now + 50);
+        wheel.schedule("kept", now + 150);
+
+        assertThat(wheel.cancel("cancelled")).isTrue();
+        assertThat(wheel.cancel("cancelled")).isFalse();
+        assertThat(wheel.cancel("unknown")).isFalse();
+
+        assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(firedAt).containsOnlyKeys("kept");
+    }
+
+    @Test
+    void rescheduleReplacesThePendingDeadline() throws InterruptedException {
+        start(1);
+        long now = System.currentTimeMillis();
+        wheel.schedule("otp", now + 30);
+        wheel.schedule("otp", now + 200);
+        wheel.scheduleIfAbsent("otp", now + 30);
+
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(firedAt.get("otp")).isGreaterThanOrEqualTo(now + 200);
+    }
+
+    private void start(int expectedFirings) {
+        fired = new CountDownLatch(expectedFirings);
+        wheel = new HierarchicalTimingWheel<>("test-wheel", TICK_MILLIS, 8, key -> {
+            firedAt.put(key, System.currentTimeMillis());
+            fired.countDown();
+        });
+    }
+}
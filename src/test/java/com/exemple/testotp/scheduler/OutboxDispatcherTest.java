@@ -0,0 +1,144 @@
+package com.exemple.testotp.scheduler;
+
+import com.exemple.testotp.entity.OutboundMessage;
+import com.exemple.testotp.exception.SmsException;
+import com.exemple.testotp.service.DeliveryStatusService;
+import com.exemple.testotp.service.MessageChannelRouter;
+import com.exemple.testotp.service.OutboxService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxDispatcherTest {
+
+    private static final String RECIPIENT = "+212600000000";
+    private static final MessageChannelRouter.Delivery WHATSAPP_DELIVERY =
+            new MessageChannelRouter.Delivery(OutboundMessage.Channel.WHATSAPP, "SM1");
+
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final MessageChannelRouter channelRouter = mock(MessageChannelRouter.class);
+    private final DeliveryStatusService deliveryStatusService = mock(DeliveryStatusService.class);
+    private final OutboxDispatcher dispatcher = new OutboxDispatcher(outboxService, channelRouter,
+            deliveryStatusService, new TaskExecutorAdapter(Runnable::run));
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 10);
+        when(outboxService.readBody(any())).thenReturn("Votre code de vérification");
+    }
+
+    @Test
+    void sentMessageIsRecordedAndLinkedToItsOtp() {
+        OutboundMessage message = message(1L);
+        when(outboxService.claimBatch(10)).thenReturn(List.of(message));
+        when(channelRouter.send(OutboundMessage.Channel.WHATSAPP, RECIPIENT, "Votre code de vérification"))
+                .thenReturn(WHATSAPP_DELIVERY);
+
+        dispatcher.dispatchPendingMessages();
+
+        verify(outboxService).markSent(1L, WHATSAPP_DELIVERY);
+        verify(deliveryStatusService).registerWhatsappMessage(RECIPIENT, "SM1");
+    }
+
+    @Test
+    void anyChannelFailureIsRecordedForRetry() {
+        OutboundMessage message = message(1L);
+        IllegalStateException error = new IllegalStateException("réponse inattendue du fournisseur");
+        when(outboxService.claimBatch(10)).thenReturn(List.of(message));
+        when(channelRouter.send(any(), any(), any())).thenThrow(error);
+
+        dispatcher.dispatchPendingMessages();
+
+        verify(outboxService).markAttemptFailed(message, error);
+        verify(outboxService, never()).markSent(any(), any());
+    }
+
+    @Test
+    void failureToRecordAnAttemptDoesNotStopTheBatch() {
+        OutboundMessage failing = message(1L);
+        OutboundMessage other = message(2L);
+        when(outboxService.claimBatch(10)).thenReturn(List.of(failing, other));
+        when(channelRouter.send(any(), any(), any())).thenThrow(new SmsException("Twilio indisponible"))
+                .thenReturn(WHATSAPP_DELIVERY);
+        doThrow(new DataAccessResourceFailureException("base indisponible"))
+                .when(outboxService).markAttemptFailed(any(), any());
+
+        dispatcher.dispatchPendingMessages();
+
+        verify(outboxService).markSent(2L, WHATSAPP_DELIVERY);
+    }
+
+    @Test
+    void unrecordedDeliveryIsWrittenOnTheNextPollWithoutResending() {
+        OutboundMessage message = message(1L);
+        when(outboxService.claimBatch(10)).thenReturn(List.of(message), List.of());
+        when(channelRouter.send(any(), any(), any())).thenReturn(WHATSAPP_DELIVERY);
+        doThrow(new DataAccessResourceFailureException("base indisponible"))
+                .doNothing()
+                .when(outboxService).markSent(1L, WHATSAPP_DELIVERY);
+
+        dispatcher.dispatchPendingMessages();
+        verify(deliveryStatusService, never()).registerWhatsappMessage(any(), any());
+
+        dispatcher.dispatchPendingMessages();
+
+        verify(channelRouter, times(1)).send(any(), any(), any());
+        verify(outboxService, times(2)).markSent(1L, WHATSAPP_DELIVERY);
+        verify(deliveryStatusService).registerWhatsappMessage(RECIPIENT, "SM1");
+    }
+
+    @Test
+    void reclaimedMessageThatAlreadyLeftIsNotSentAgain() {
+        OutboundMessage message = message(1L);
+        when(outboxService.claimBatch(10)).thenReturn(List.of(message));
+        when(channelRouter.send(any(), any(), any())).thenReturn(WHATSAPP_DELIVERY);
+        doThrow(new DataAccessResourceFailureException("base indisponible"))
+                .doThrow(new DataAccessResourceFailureException("base indisponible"))
+                .doNothing()
+                .when(outboxService).markSent(1L, WHATSAPP_DELIVERY);
+
+        dispatcher.dispatchPendingMessages();
+        // Bail expiré avant que l'écriture ne passe : le même message est de nouveau réservé
+        dispatcher.dispatchPendingMessages();
+
+        verify(channelRouter, times(1)).send(any(), any(), any());
+        verify(outboxService, times(3)).markSent(1L, WHATSAPP_DELIVERY);
+        verify(deliveryStatusService).registerWhatsappMessage(RECIPIENT, "SM1");
+    }
+
+    @Test
+    void fullBatchIsFollowedByAnotherClaim() {
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 1);
+        when(outboxService.claimBatch(anyInt())).thenReturn(List.of(message(1L)), List.of());
+        when(channelRouter.send(any(), any(), any())).thenReturn(WHATSAPP_DELIVERY);
+
+        dispatcher.dispatchPendingMessages();
+
+        verify(outboxService, times(2)).claimBatch(1);
+    }
+
+    private static OutboundMessage message(Long id) {
+        OutboundMessage message = new OutboundMessage();
+        message.setId(id);
+        message.setChannel(OutboundMessage.Channel.WHATSAPP);
+        message.setRecipient(RECIPIENT);
+        message.setBody("chiffré");
+        message.setStatus(OutboundMessage.Status.SENDING);
+        message.setNextAttemptAt(LocalDateTime.now());
+        return message;
+    }
+}
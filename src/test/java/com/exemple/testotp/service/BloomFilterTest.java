@@ -0,0 +1,64 @@
+package com.exemple.testotp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void neverReportsAnInsertedValueAsAbsent() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        List<String> values = IntStream.range(0, 10_000)
+                .mapToObj(i -> "+2126" + String.format("%08d", i))
+                .toList();
+
+        values.forEach(filter::put);
+
+        assertThat(values).allMatch(filter::mightContain);
+    }
+
+    @Test
+    void neverReportsAnInsertedValueAsAbsentUnderConcurrentInsertions() throws Exception {
+        BloomFilter filter = new BloomFilter(40_000, 0.01);
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            batches.add(IntStream.range(0, 5_000).mapToObj(j -> UUID.randomUUID() + "@exemple.com").toList());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(batches.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<String> batch : batches) {
+                futures.add(executor.submit(() -> batch.forEach(filter::put)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).allMatch(filter::mightContain));
+    }
+
+    @Test
+    void keepsFalsePositivesNearTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.put("present-" + i));
+
+        long falsePositives = IntStream.range(0, 10_000)
+                .filter(i -> filter.mightContain("absent-" + i))
+                .count();
+
+        assertThat(falsePositives).isLessThan(300);
+    }
+}
@@ -0,0 +1,107 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OtpCode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Issues de la consommation en une instruction ({@code OtpCodeRepository.consumeOtp}), sur la base.
+ */
+@SpringBootTest
+class DatabaseOtpStoreTest {
+
+    private static final String CODE = "123456";
+
+    @Autowired
+    private DatabaseOtpStore otpStore;
+
+    @Test
+    void correctCodeIsVerifiedOnlyOnce() {
+        String phoneNumber = issue(CODE, LocalDateTime.now().plusMinutes(5));
+
+        assertThat(otpStore.consume(phoneNumber, CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.VERIFIED);
+        assertThat(otpStore.consume(phoneNumber, CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.NOT_FOUND);
+    }
+
+    @Test
+    void wrongCodeIsIncorrectAndLeavesTheCodeUsable() {
+        String phoneNumber = issue(CODE, LocalDateTime.now().plusMinutes(5));
+
+        assertThat(otpStore.consume(phoneNumber, "654321", LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.INCORRECT);
+        assertThat(otpStore.consume(phoneNumber, CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.VERIFIED);
+    }
+
+    @Test
+    void expiredCodeIsNotFound() {
+        String phoneNumber = issue(CODE, LocalDateTime.now().minusSeconds(1));
+
+        assertThat(otpStore.consume(phoneNumber, CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.NOT_FOUND);
+        assertThat(otpStore.consume(phoneNumber, "654321", LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.NOT_FOUND);
+    }
+
+    @Test
+    void numberWithoutCodeIsNotFound() {
+        assertThat(otpStore.consume(randomPhoneNumber(), CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.NOT_FOUND);
+    }
+
+    @Test
+    void invalidatedCodeIsNotFound() {
+        String phoneNumber = issue(CODE, LocalDateTime.now().plusMinutes(5));
+
+        otpStore.invalidate(phoneNumber);
+
+        assertThat(otpStore.consume(phoneNumber, CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.NOT_FOUND);
+    }
+
+    @Test
+    void concurrentVerificationsConsumeTheCodeOnce() throws Exception {
+        String phoneNumber = issue(CODE, LocalDateTime.now().plusMinutes(5));
+        int requests = 8;
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        List<OtpStore.ConsumeResult> results = new ArrayList<>();
+        try {
+            List<Future<OtpStore.ConsumeResult>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return otpStore.consume(phoneNumber, CODE, LocalDateTime.now());
+                }));
+            }
+            start.countDown();
+            for (Future<OtpStore.ConsumeResult> future : futures) {
+                results.add(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(results).containsOnlyOnce(OtpStore.ConsumeResult.VERIFIED);
+        assertThat(results).filteredOn(result -> result != OtpStore.ConsumeResult.VERIFIED)
+                .containsOnly(OtpStore.ConsumeResult.NOT_FOUND);
+    }
+
+    private String issue(String code, LocalDateTime expiresAt) {
+        OtpCode otp = new OtpCode();
+        otp.setPhoneNumber(randomPhoneNumber());
+        otp.setExpiresAt(expiresAt);
+        return otpStore.save(otp, code).getPhoneNumber();
+    }
+
+    private static String randomPhoneNumber() {
+        return String.format("+2127%08d", ThreadLocalRandom.current().nextInt(100_000_000));
+    }
+}
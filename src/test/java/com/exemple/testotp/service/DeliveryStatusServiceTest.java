@@ -0,0 +1,108 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OtpCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class DeliveryStatusServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final DeliveryStatusService service =
+            new DeliveryStatusService(jdbcTemplate, eventPublisher, new SimpleMeterRegistry());
+
+    @Test
+    void outOfOrderCallbacksKeepTheMostAdvancedStatus() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        service.recordStatus("SM1", "delivered");
+        service.recordStatus("SM1", "sent");
+        service.recordStatus("SM1", "queued");
+        service.flush();
+
+        assertThat(flushedRows()).singleElement().satisfies(row -> assertThat(row)
+                .containsExactly(OtpCode.WhatsappStatus.DELIVERED.name(), "SM1", OtpCode.WhatsappStatus.DELIVERED.ordinal() + 1));
+    }
+
+    @Test
+    void laterStatusReplacesAnEarlierOneInTheBuffer() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        service.recordStatus("SM1", "sent");
+        service.recordStatus("SM1", "read");
+        service.flush();
+
+        assertThat(flushedRows()).singleElement()
+                .satisfies(row -> assertThat(row[0]).isEqualTo(OtpCode.WhatsappStatus.READ.name()));
+    }
+
+    @Test
+    void irrelevantStatusesAreIgnored() {
+        service.recordStatus("SM1", "receiving");
+        service.recordStatus(null, "delivered");
+        service.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void failedDeliveryPublishesAnSmsFallbackForTheCurrentCode() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("SM1"))).thenReturn(List.of("+212600000000"));
+
+        service.recordStatus("SM1", "undelivered");
+        service.flush();
+
+        verify(eventPublisher).publishEvent(new DeliveryStatusService.WhatsappFailedEvent("+212600000000"));
+    }
+
+    @Test
+    void statusArrivingBeforeItsSidIsRetriedOnLaterFlushes() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{0}, new int[]{1});
+
+        service.recordStatus("SM1", "failed");
+        service.flush();
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+
+        service.flush();
+
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+        verify(jdbcTemplate).queryForList(anyString(), eq(String.class), eq("SM1"));
+    }
+
+    @Test
+    void unmatchedStatusIsDroppedAfterBoundedRetries() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{0});
+
+        service.recordStatus("SM1", "delivered");
+        for (int i = 0; i < 10; i++) {
+            service.flush();
+        }
+
+        verify(jdbcTemplate, times(5)).batchUpdate(anyString(), anyList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> flushedRows() {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        return rows.getValue();
+    }
+}
@@ -0,0 +1,124 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OtpCode;
+import com.exemple.testotp.repository.OtpCodeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Visibilité des changements du cache selon l'issue de la transaction de l'appelant.
+ */
+class InMemoryOtpStoreTest {
+
+    private static final String PHONE = "+212600000000";
+    private static final String CODE = "123456";
+
+    private final OtpCodeRepository otpCodeRepository = mock(OtpCodeRepository.class);
+    private final OtpCodeHasher otpCodeHasher = new OtpCodeHasher(Base64.getEncoder().encodeToString(new byte[32]));
+    private final InMemoryOtpStore store = new InMemoryOtpStore(otpCodeRepository, otpCodeHasher,
+            mock(OtpCodeCipher.class), 4, 100);
+
+    @AfterEach
+    void clearTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void codeConsumedInARolledBackTransactionIsUsableAgain() {
+        storedOtp(1L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertThat(store.consume(PHONE, CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.VERIFIED);
+        // Pendant la transaction, une autre requête ne peut pas consommer le même code
+        assertThat(store.consume(PHONE, CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.NOT_FOUND);
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(store.consume(PHONE, CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.VERIFIED);
+    }
+
+    @Test
+    void codeConsumedInACommittedTransactionIsGoneAndQueuedForTheFlush() {
+        storedOtp(1L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        store.consume(PHONE, CODE, LocalDateTime.now());
+        store.flushUsedCodes();
+        verify(otpCodeRepository, never()).markUsed(any());
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        // La ligne n'est pas encore marquée en base : la relecture ne doit pas la rendre utilisable
+        assertThat(store.consume(PHONE, CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.NOT_FOUND);
+
+        store.flushUsedCodes();
+        verify(otpCodeRepository).markUsed(List.of(1L));
+    }
+
+    @Test
+    void newCodeIsCachedOnlyOnceItsTransactionCommits() {
+        OtpCode otp = otp(1L);
+        when(otpCodeRepository.save(any())).thenReturn(otp);
+
+        TransactionSynchronizationManager.initSynchronization();
+        store.save(otp(null), CODE);
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(store.consume(PHONE, CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.NOT_FOUND);
+        verify(otpCodeRepository).findValidOtpByPhoneNumber(eq(PHONE), any());
+
+        TransactionSynchronizationManager.initSynchronization();
+        store.save(otp(null), CODE);
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(store.consume(PHONE, CODE, LocalDateTime.now())).isEqualTo(OtpStore.ConsumeResult.VERIFIED);
+    }
+
+    @Test
+    void reminderClaimWritesPendingConsumptionsFirst() {
+        storedOtp(1L);
+        store.consume(PHONE, CODE, LocalDateTime.now());
+
+        store.claimReminder(PHONE, LocalDateTime.now(), LocalDateTime.now(), LocalDateTime.now());
+
+        InOrder order = inOrder(otpCodeRepository);
+        order.verify(otpCodeRepository).markUsed(List.of(1L));
+        order.verify(otpCodeRepository).claimOtpForWhatsappReminder(eq(PHONE), any(), any(), any());
+    }
+
+    private void storedOtp(Long id) {
+        when(otpCodeRepository.findValidOtpByPhoneNumber(eq(PHONE), any())).thenReturn(Optional.of(otp(id)));
+    }
+
+    private OtpCode otp(Long id) {
+        OtpCode otp = new OtpCode();
+        otp.setId(id);
+        otp.setPhoneNumber(PHONE);
+        otp.setCodeHash(otpCodeHasher.hash(PHONE, CODE));
+        otp.setExpiresAt(LocalDateTime.now().plusMinutes(5));
+        return otp;
+    }
+
+    private static void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
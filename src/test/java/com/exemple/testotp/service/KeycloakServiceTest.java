@@ -0,0 +1,96 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.exception.KeycloakException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.InternalServerErrorException;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.CredentialRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Création d'un utilisateur déjà présent dans Keycloak (tentative précédente non enregistrée en base).
+ */
+class KeycloakServiceTest {
+
+    private static final String EMAIL = "jean.dupont@exemple.com";
+    private static final String PHONE = "+212600000000";
+
+    private final Keycloak keycloak = mock(Keycloak.class);
+    private final UsersResource usersResource = mock(UsersResource.class);
+    private final UserResource userResource = mock(UserResource.class);
+    private final KeycloakService keycloakService = new KeycloakService(keycloak, new ObjectMapper());
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(keycloakService, "realm", "test");
+        RealmResource realmResource = mock(RealmResource.class);
+        when(keycloak.realm("test")).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.get("kc-1")).thenReturn(userResource);
+        Response conflict = mock(Response.class);
+        when(conflict.getStatus()).thenReturn(409);
+        when(usersResource.create(any())).thenReturn(conflict);
+    }
+
+    @Test
+    void existingUserWithTheSamePhoneIsTakenOverWithTheNewPassword() {
+        existingUser(PHONE);
+
+        assertThat(keycloakService.createUser("Jean", "Dupont", EMAIL, PHONE, "NouveauMotDePasse1!")).isEqualTo("kc-1");
+
+        ArgumentCaptor<CredentialRepresentation> credential = ArgumentCaptor.forClass(CredentialRepresentation.class);
+        verify(userResource).resetPassword(credential.capture());
+        assertThat(credential.getValue().getValue()).isEqualTo("NouveauMotDePasse1!");
+        assertThat(credential.getValue().isTemporary()).isFalse();
+    }
+
+    @Test
+    void existingUserWithAnotherPhoneIsRefused() {
+        existingUser("+212611111111");
+
+        assertThatThrownBy(() -> keycloakService.createUser("Jean", "Dupont", EMAIL, PHONE, "NouveauMotDePasse1!"))
+                .isInstanceOf(KeycloakException.class);
+
+        verify(userResource, never()).resetPassword(any());
+    }
+
+    @Test
+    void failedPasswordResetFailsTheCreation() {
+        existingUser(PHONE);
+        doThrow(new InternalServerErrorException())
+                .when(userResource).resetPassword(any());
+
+        assertThatThrownBy(() -> keycloakService.createUser("Jean", "Dupont", EMAIL, PHONE, "NouveauMotDePasse1!"))
+                .isInstanceOf(KeycloakException.class);
+    }
+
+    private void existingUser(String phoneNumber) {
+        UserRepresentation existing = new UserRepresentation();
+        existing.setId("kc-1");
+        existing.setUsername(EMAIL);
+        existing.setAttributes(Collections.singletonMap("phoneNumber", List.of(phoneNumber)));
+        when(usersResource.search(eq(EMAIL), any(), any(), any(), eq(0), eq(1), (Boolean) any(), eq(false), eq(true)))
+                .thenReturn(List.of(existing));
+    }
+}
@@ -0,0 +1,62 @@
+package com.exemple.testotp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalRateLimiterTest {
+
+    private static final RateLimiter.Policy POLICY = new RateLimiter.Policy("test", 2, Duration.ofMillis(400));
+
+    private final LocalRateLimiter limiter = new LocalRateLimiter();
+
+    @Test
+    void allowsTheBurstThenRejectsWithARetryDelay() {
+        assertThat(limiter.tryAcquire("key", POLICY)).isZero();
+        assertThat(limiter.tryAcquire("key", POLICY)).isZero();
+
+        long retryAfter = limiter.tryAcquire("key", POLICY);
+
+        assertThat(retryAfter).isPositive().isLessThanOrEqualTo(POLICY.emissionIntervalMillis());
+    }
+
+    @Test
+    void refillsOneTokenPerEmissionInterval() throws InterruptedException {
+        limiter.tryAcquire("key", POLICY);
+        limiter.tryAcquire("key", POLICY);
+        long retryAfter = limiter.tryAcquire("key", POLICY);
+
+        Thread.sleep(retryAfter + 20);
+
+        assertThat(limiter.tryAcquire("key", POLICY)).isZero();
+        assertThat(limiter.tryAcquire("key", POLICY)).isPositive();
+    }
+
+    @Test
+    void checkDoesNotConsumeATokenAndKeysAreIndependent() {
+        assertThat(limiter.check("key", POLICY)).isZero();
+        assertThat(limiter.check("key", POLICY)).isZero();
+        limiter.tryAcquire("key", POLICY);
+        limiter.tryAcquire("key", POLICY);
+
+        assertThat(limiter.check("key", POLICY)).isPositive();
+        assertThat(limiter.tryAcquire("other", POLICY)).isZero();
+    }
+
+    @Test
+    void evictsOnlyBucketsBackToFullCapacity() throws InterruptedException {
+        limiter.tryAcquire("key", POLICY);
+        limiter.tryAcquire("key", POLICY);
+        limiter.evictIdleBuckets();
+
+        assertThat(limiter.check("key", POLICY)).isPositive();
+
+        Thread.sleep(POLICY.burstMillis() + 20);
+        limiter.evictIdleBuckets();
+
+        assertThat(limiter.tryAcquire("key", POLICY)).isZero();
+        assertThat(limiter.tryAcquire("key", POLICY)).isZero();
+    }
+}
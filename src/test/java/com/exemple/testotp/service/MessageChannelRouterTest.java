@@ -0,0 +1,150 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OutboundMessage;
+import com.exemple.testotp.exception.SmsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class MessageChannelRouterTest {
+
+    private static final String RECIPIENT = "+212600000000";
+    private static final int MIN_SAMPLES = 5;
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakeChannel whatsapp = new FakeChannel(OutboundMessage.Channel.WHATSAPP);
+    private final FakeChannel sms = new FakeChannel(OutboundMessage.Channel.SMS);
+
+    @Test
+    void healthyPreferredChannelIsUsed() {
+        MessageChannelRouter router = router(60, whatsapp, sms);
+
+        MessageChannelRouter.Delivery delivery = router.send(OutboundMessage.Channel.WHATSAPP, RECIPIENT, "Votre code");
+
+        assertThat(delivery).isEqualTo(new MessageChannelRouter.Delivery(OutboundMessage.Channel.WHATSAPP, "WHATSAPP-1"));
+        assertThat(sms.sent).hasValue(0);
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void degradedChannelFallsBackToTheHealthyOne() {
+        MessageChannelRouter router = router(60, whatsapp, sms);
+        degrade(router, whatsapp);
+
+        MessageChannelRouter.Delivery delivery = router.send(OutboundMessage.Channel.WHATSAPP, RECIPIENT, "Votre code");
+
+        assertThat(delivery.channel()).isEqualTo(OutboundMessage.Channel.SMS);
+        assertThat(sms.sent).hasValue(1);
+        verify(eventPublisher).publishEvent(new MessageChannelRouter.ReroutedEvent(
+                RECIPIENT, OutboundMessage.Channel.WHATSAPP, OutboundMessage.Channel.SMS));
+        assertThat(meterRegistry.get("messaging.rerouted").tag("from", "whatsapp").tag("to", "sms").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void allChannelsDegradedKeepsThePreferredChannel() {
+        MessageChannelRouter router = router(60, whatsapp, sms);
+        degrade(router, whatsapp);
+        degrade(router, sms);
+        whatsapp.failing = false;
+
+        MessageChannelRouter.Delivery delivery = router.send(OutboundMessage.Channel.WHATSAPP, RECIPIENT, "Votre code");
+
+        assertThat(delivery.channel()).isEqualTo(OutboundMessage.Channel.WHATSAPP);
+    }
+
+    @Test
+    void degradedChannelRecoversOnceItsWindowExpires() throws InterruptedException {
+        MessageChannelRouter router = router(1, whatsapp, sms);
+        degrade(router, whatsapp);
+        whatsapp.failing = false;
+
+        Thread.sleep(1100);
+
+        assertThat(router.send(OutboundMessage.Channel.WHATSAPP, RECIPIENT, "Votre code").channel())
+                .isEqualTo(OutboundMessage.Channel.WHATSAPP);
+    }
+
+    @Test
+    void missingChannelWithoutAlternativeIsRejected() {
+        MessageChannelRouter router = router(60, sms);
+        degrade(router, sms);
+
+        assertThatThrownBy(() -> router.send(OutboundMessage.Channel.WHATSAPP, RECIPIENT, "Votre code"))
+                .isInstanceOf(SmsException.class);
+    }
+
+    @Test
+    void pinnedSendStaysOnItsChannelEvenWhenDegraded() {
+        MessageChannelRouter router = router(60, whatsapp, sms);
+        degrade(router, sms);
+        sms.failing = false;
+
+        MessageChannelRouter.Delivery delivery =
+                router.sendWithoutRerouting(OutboundMessage.Channel.SMS, RECIPIENT, "Vérifiez WhatsApp");
+
+        assertThat(delivery).isEqualTo(new MessageChannelRouter.Delivery(OutboundMessage.Channel.SMS, "SMS-1"));
+        assertThat(whatsapp.sent).hasValue(0);
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void pinnedSendToAMissingChannelIsRejected() {
+        MessageChannelRouter router = router(60, whatsapp);
+
+        assertThatThrownBy(() -> router.sendWithoutRerouting(OutboundMessage.Channel.SMS, RECIPIENT, "Vérifiez WhatsApp"))
+                .isInstanceOf(SmsException.class);
+        assertThat(whatsapp.sent).hasValue(0);
+    }
+
+    private MessageChannelRouter router(long windowSeconds, MessageChannel... channels) {
+        MessageChannelRouter router = new MessageChannelRouter(List.of(channels), eventPublisher, meterRegistry, windowSeconds);
+        ReflectionTestUtils.setField(router, "minSamples", MIN_SAMPLES);
+        ReflectionTestUtils.setField(router, "maxErrorRate", 0.5);
+        ReflectionTestUtils.setField(router, "maxLatencyMillis", 5000L);
+        return router;
+    }
+
+    private static void degrade(MessageChannelRouter router, FakeChannel channel) {
+        channel.failing = true;
+        for (int i = 0; i < MIN_SAMPLES; i++) {
+            assertThatThrownBy(() -> router.send(channel.type(), RECIPIENT, "Votre code")).isInstanceOf(SmsException.class);
+        }
+    }
+
+    private static final class FakeChannel implements MessageChannel {
+
+        private final OutboundMessage.Channel type;
+        private final AtomicInteger sent = new AtomicInteger();
+        private volatile boolean failing;
+
+        private FakeChannel(OutboundMessage.Channel type) {
+            this.type = type;
+        }
+
+        @Override
+        public OutboundMessage.Channel type() {
+            return type;
+        }
+
+        @Override
+        public String send(String recipient, String body) {
+            if (failing) {
+                throw new SmsException(type + " indisponible");
+            }
+            return type + "-" + sent.incrementAndGet();
+        }
+    }
+}
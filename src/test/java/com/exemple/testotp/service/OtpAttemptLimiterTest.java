@@ -0,0 +1,110 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.exception.OtpAttemptsExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OtpAttemptLimiterTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long LOCKOUT_MINUTES = 15;
+    private static final String PHONE = "+212600000000";
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OtpAttemptLimiter limiter =
+            new OtpAttemptLimiter(meterRegistry, true, MAX_ATTEMPTS, LOCKOUT_MINUTES, now::get);
+
+    @Test
+    void locksTheSessionAndThePhoneOnceAttemptsAreExhausted() {
+        assertThat(limiter.recordFailure("session-1", PHONE)).isFalse();
+        assertThat(limiter.recordFailure("session-1", PHONE)).isFalse();
+        assertThatCode(() -> limiter.checkAllowed("session-1")).doesNotThrowAnyException();
+
+        assertThat(limiter.recordFailure("session-1", PHONE)).isTrue();
+
+        assertThatThrownBy(() -> limiter.checkAllowed("session-1"))
+                .isInstanceOf(OtpAttemptsExceededException.class)
+                .extracting(e -> ((OtpAttemptsExceededException) e).getRetryAfterSeconds())
+                .isEqualTo(TimeUnit.MINUTES.toSeconds(LOCKOUT_MINUTES));
+        // Le numéro est bloqué quel que soit son format
+        assertThatThrownBy(() -> limiter.checkAllowed(OtpAttemptLimiter.Scope.PHONE, "+212 600-000-000"))
+                .isInstanceOf(OtpAttemptsExceededException.class);
+        assertThat(meterRegistry.get("otp.verify.locked").tag("scope", "session").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void phoneLockAppliesToEverySessionOfThePhone() {
+        limiter.recordFailure("session-1", PHONE);
+        limiter.recordFailure("session-2", PHONE);
+        limiter.recordFailure("session-1", PHONE);
+
+        assertThatThrownBy(() -> limiter.checkAllowed("session-2")).isInstanceOf(OtpAttemptsExceededException.class);
+        // Session sans échec, pas encore rattachée : seule sa propre clé passe, son numéro reste bloqué
+        assertThatCode(() -> limiter.checkAllowed("session-3")).doesNotThrowAnyException();
+        assertThatThrownBy(() -> limiter.checkAllowed(OtpAttemptLimiter.Scope.PHONE, PHONE))
+                .isInstanceOf(OtpAttemptsExceededException.class);
+    }
+
+    @Test
+    void lockoutExpiresAtTheEndOfTheWindow() {
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            limiter.recordFailure("session-1", PHONE);
+        }
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(LOCKOUT_MINUTES) - 1000);
+        assertThatThrownBy(() -> limiter.checkAllowed("session-1"))
+                .isInstanceOf(OtpAttemptsExceededException.class)
+                .extracting(e -> ((OtpAttemptsExceededException) e).getRetryAfterSeconds())
+                .isEqualTo(1L);
+
+        now.addAndGet(1000);
+        assertThatCode(() -> limiter.checkAllowed("session-1")).doesNotThrowAnyException();
+
+        // Nouvelle fenêtre : le compteur repart de zéro
+        assertThat(limiter.recordFailure("session-1", PHONE)).isFalse();
+        assertThatCode(() -> limiter.checkAllowed("session-1")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void evictionDropsOnlyExpiredWindows() {
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            limiter.recordFailure("session-1", PHONE);
+        }
+        limiter.evictExpired();
+        assertThatThrownBy(() -> limiter.checkAllowed("session-1")).isInstanceOf(OtpAttemptsExceededException.class);
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(LOCKOUT_MINUTES));
+        limiter.evictExpired();
+
+        assertThatCode(() -> limiter.checkAllowed("session-1")).doesNotThrowAnyException();
+        assertThat(limiter.recordFailure("session-1", PHONE)).isFalse();
+    }
+
+    @Test
+    void resetClearsTheSessionAndThePhone() {
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            limiter.recordFailure("session-1", PHONE);
+        }
+
+        limiter.reset("session-1", PHONE);
+
+        assertThatCode(() -> limiter.checkAllowed("session-1")).doesNotThrowAnyException();
+        assertThatCode(() -> limiter.checkAllowed(OtpAttemptLimiter.Scope.PHONE, PHONE)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void disabledLimiterNeverLocks() {
+        OtpAttemptLimiter disabled = new OtpAttemptLimiter(meterRegistry, false, 1, LOCKOUT_MINUTES, now::get);
+
+        assertThat(disabled.recordFailure("session-1", PHONE)).isFalse();
+        assertThatCode(() -> disabled.checkAllowed("session-1")).doesNotThrowAnyException();
+    }
+}
@@ -0,0 +1,100 @@
+package com.exemple.testotp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OtpCodePoolTest {
+
+    // Codes longs : une collision aléatoire entre deux codes distincts est négligeable
+    private static final int CODE_LENGTH = 18;
+    private static final int CONSUMERS = 8;
+    private static final int CODES_PER_CONSUMER = 20_000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void servesRefilledCodesInOrderThenFallsBack() {
+        OtpCodePool pool = new OtpCodePool(meterRegistry, 6, true, 4);
+        pool.refill();
+
+        assertThat(pool.size()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(pool.nextCode()).hasSize(6).containsOnlyDigits();
+        }
+        assertThat(pool.size()).isZero();
+        assertThat(pool.nextCode()).hasSize(6).containsOnlyDigits();
+        assertThat(meterRegistry.get("otp.pool.fallback").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void disabledPoolNeverRefills() {
+        OtpCodePool pool = new OtpCodePool(meterRegistry, 6, false, 4);
+        pool.refill();
+
+        assertThat(pool.size()).isZero();
+        assertThat(pool.nextCode()).hasSize(6).containsOnlyDigits();
+    }
+
+    @Test
+    void concurrentConsumersNeverGetTheSameCodeNorLoseAny() throws Exception {
+        OtpCodePool pool = new OtpCodePool(meterRegistry, CODE_LENGTH, true, 64);
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+        AtomicInteger returned = new AtomicInteger();
+        AtomicBoolean consuming = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONSUMERS + 1);
+        try {
+            // Producteur unique, comme la tâche planifiée
+            Future<?> producer = executor.submit(() -> {
+                start.await();
+                while (consuming.get()) {
+                    pool.refill();
+                }
+                return null;
+            });
+            List<Future<?>> consumers = new ArrayList<>();
+            for (int i = 0; i < CONSUMERS; i++) {
+                consumers.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < CODES_PER_CONSUMER; j++) {
+                        codes.add(pool.nextCode());
+                        returned.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> consumer : consumers) {
+                consumer.get();
+            }
+            consuming.set(false);
+            producer.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double refilled = meterRegistry.get("otp.pool.refilled").counter().count();
+        double fallbacks = meterRegistry.get("otp.pool.fallback").counter().count();
+
+        assertThat(returned.get()).isEqualTo(CONSUMERS * CODES_PER_CONSUMER);
+        assertThat(codes).hasSize(returned.get());
+        // Chaque code produit est soit servi une seule fois, soit encore dans la réserve
+        assertThat(refilled - pool.size() + fallbacks).isEqualTo(returned.get());
+        assertThat(refilled).isPositive();
+    }
+}
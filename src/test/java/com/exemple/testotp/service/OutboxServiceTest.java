@@ -0,0 +1,106 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OutboundMessage;
+import com.exemple.testotp.exception.SmsException;
+import com.exemple.testotp.repository.OutboundMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxServiceTest {
+
+    private final OutboundMessageRepository repository = mock(OutboundMessageRepository.class);
+    private final OtpCodeCipher otpCodeCipher = new OtpCodeCipher(Base64.getEncoder().encodeToString(new byte[32]));
+    private final OutboxService outboxService = new OutboxService(repository, otpCodeCipher);
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(outboxService, "leaseSeconds", 60);
+        ReflectionTestUtils.setField(outboxService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(outboxService, "initialBackoffSeconds", 5L);
+        ReflectionTestUtils.setField(outboxService, "maxBackoffSeconds", 8L);
+    }
+
+    @Test
+    void failedAttemptIsRetriedAfterAnExponentialBackoff() {
+        LocalDateTime before = LocalDateTime.now();
+
+        outboxService.markAttemptFailed(message(0), new SmsException("Twilio indisponible"));
+        outboxService.markAttemptFailed(message(1), new SmsException("Twilio indisponible"));
+
+        ArgumentCaptor<LocalDateTime> nextAttemptAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository, times(2)).markAttemptFailed(eq(42L), eq(OutboundMessage.Status.PENDING),
+                nextAttemptAt.capture(), eq("Twilio indisponible"));
+        assertThat(nextAttemptAt.getAllValues().get(0)).isCloseTo(before.plusSeconds(5), within(2, ChronoUnit.SECONDS));
+        // 10 s plafonnées à outbox.backoff.max.seconds
+        assertThat(nextAttemptAt.getAllValues().get(1)).isCloseTo(before.plusSeconds(8), within(2, ChronoUnit.SECONDS));
+    }
+
+    @Test
+    void lastAttemptMarksTheMessageFailedAndDropsItsBody() {
+        outboxService.markAttemptFailed(message(2), new SmsException("Numéro invalide"));
+
+        verify(repository).markFailed(42L, OutboundMessage.Status.FAILED, "Numéro invalide");
+        verify(repository, never()).markAttemptFailed(any(), any(), any(), any());
+    }
+
+    @Test
+    void queuedTextIsStoredEncryptedAndReadBackAtSendTime() {
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OutboundMessage message = outboxService.enqueue(OutboundMessage.Channel.WHATSAPP, "+212600000000",
+                "Votre code de vérification est: 123456");
+
+        assertThat(message.getBody()).doesNotContain("123456");
+        assertThat(outboxService.readBody(message)).isEqualTo("Votre code de vérification est: 123456");
+    }
+
+    @Test
+    void claimedBatchIsLeasedAsSending() {
+        OutboundMessage message = message(0);
+        when(repository.findClaimable(any(), anyInt())).thenReturn(List.of(message));
+
+        assertThat(outboxService.claimBatch(10)).containsExactly(message);
+
+        verify(repository).markSending(eq(List.of(42L)), eq(OutboundMessage.Status.SENDING), any());
+    }
+
+    @Test
+    void emptyClaimLeasesNothing() {
+        when(repository.findClaimable(any(), anyInt())).thenReturn(List.of());
+
+        assertThat(outboxService.claimBatch(10)).isEmpty();
+
+        verify(repository, never()).markSending(anyList(), any(), any());
+    }
+
+    private static OutboundMessage message(int attempts) {
+        OutboundMessage message = new OutboundMessage();
+        message.setId(42L);
+        message.setChannel(OutboundMessage.Channel.WHATSAPP);
+        message.setRecipient("+212600000000");
+        message.setBody("Votre code");
+        message.setStatus(OutboundMessage.Status.SENDING);
+        message.setAttempts(attempts);
+        message.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        return message;
+    }
+}
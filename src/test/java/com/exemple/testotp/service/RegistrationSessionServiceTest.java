@@ -0,0 +1,127 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.RegistrationSession;
+import com.exemple.testotp.exception.InvalidSessionStateException;
+import com.exemple.testotp.exception.SessionExpiredException;
+import com.exemple.testotp.exception.SessionNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Transitions gardées de la session en base : chaque étape n'est acceptée que depuis l'étape précédente.
+ */
+@SpringBootTest
+class RegistrationSessionServiceTest {
+
+    @Autowired
+    private RegistrationSessionService sessionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void sessionMovesThroughEachStepOnce() {
+        String sessionId = newSession();
+
+        RegistrationSession verified = sessionService.markOtpVerified(sessionId);
+        assertThat(verified.getState()).isEqualTo(RegistrationSession.State.OTP_VERIFIED);
+
+        RegistrationSessionService.CompletionClaim claim = sessionService.claimCompletion(sessionId);
+        assertThat(claim.claimed()).isTrue();
+        assertThat(claim.session().getCompletionStatus()).isEqualTo(RegistrationSession.CompletionStatus.PROCESSING);
+
+        sessionService.markCompleted(claim.session());
+        assertThat(sessionService.findSession(sessionId).getState()).isEqualTo(RegistrationSession.State.COMPLETED);
+    }
+
+    @Test
+    void otpCannotBeVerifiedTwice() {
+        String sessionId = newSession();
+        sessionService.markOtpVerified(sessionId);
+
+        assertThatThrownBy(() -> sessionService.markOtpVerified(sessionId))
+                .isInstanceOf(InvalidSessionStateException.class)
+                .hasMessageContaining("déjà vérifié");
+    }
+
+    @Test
+    void completionRequiresAVerifiedPhone() {
+        String sessionId = newSession();
+
+        assertThatThrownBy(() -> sessionService.claimCompletion(sessionId))
+                .isInstanceOf(InvalidSessionStateException.class);
+        assertThat(sessionService.findSession(sessionId).getCompletionStatus()).isNull();
+    }
+
+    @Test
+    void replayedCompletionReturnsTheCurrentStateWithoutClaimingAgain() {
+        String sessionId = newSession();
+        sessionService.markOtpVerified(sessionId);
+        RegistrationSession claimed = sessionService.claimCompletion(sessionId).session();
+
+        RegistrationSessionService.CompletionClaim replay = sessionService.claimCompletion(sessionId);
+        assertThat(replay.claimed()).isFalse();
+        assertThat(replay.session().getCompletionStatus()).isEqualTo(RegistrationSession.CompletionStatus.PROCESSING);
+
+        sessionService.markCompleted(claimed);
+        RegistrationSessionService.CompletionClaim afterCompletion = sessionService.claimCompletion(sessionId);
+        assertThat(afterCompletion.claimed()).isFalse();
+        assertThat(afterCompletion.session().getState()).isEqualTo(RegistrationSession.State.COMPLETED);
+    }
+
+    @Test
+    void failedCompletionCanBeClaimedAgain() {
+        String sessionId = newSession();
+        sessionService.markOtpVerified(sessionId);
+        RegistrationSession claimed = sessionService.claimCompletion(sessionId).session();
+        sessionService.markCompletionFailed(claimed, "Keycloak indisponible");
+
+        assertThat(sessionService.claimCompletion(sessionId).claimed()).isTrue();
+    }
+
+    @Test
+    void completionTakenOverByAnotherRequestIsNotMarkedCompleted() {
+        String sessionId = newSession();
+        sessionService.markOtpVerified(sessionId);
+        RegistrationSession claimed = sessionService.claimCompletion(sessionId).session();
+        sessionService.markCompletionFailed(claimed, "Keycloak indisponible");
+
+        assertThatThrownBy(() -> sessionService.markCompleted(claimed)).isInstanceOf(InvalidSessionStateException.class);
+        assertThat(sessionService.findSession(sessionId).getState()).isEqualTo(RegistrationSession.State.OTP_VERIFIED);
+    }
+
+    @Test
+    void expiredSessionRefusesEveryTransition() {
+        String sessionId = newSession();
+        sessionService.markOtpVerified(sessionId);
+        jdbcTemplate.update("UPDATE registration_sessions SET expires_at = now() - interval '1 minute' WHERE session_id = ?",
+                sessionId);
+
+        assertThatThrownBy(() -> sessionService.claimCompletion(sessionId)).isInstanceOf(SessionExpiredException.class);
+
+        String startedId = newSession();
+        jdbcTemplate.update("UPDATE registration_sessions SET expires_at = now() - interval '1 minute' WHERE session_id = ?",
+                startedId);
+        assertThatThrownBy(() -> sessionService.markOtpVerified(startedId)).isInstanceOf(SessionExpiredException.class);
+    }
+
+    @Test
+    void unknownSessionIsNotFound() {
+        assertThatThrownBy(() -> sessionService.markOtpVerified(UUID.randomUUID().toString()))
+                .isInstanceOf(SessionNotFoundException.class);
+    }
+
+    private String newSession() {
+        int suffix = ThreadLocalRandom.current().nextInt(100_000_000);
+        return sessionService.createSession("Jean", "Dupont", "jean." + suffix + "@exemple.com",
+                String.format("+2126%08d", suffix)).getSessionId();
+    }
+}
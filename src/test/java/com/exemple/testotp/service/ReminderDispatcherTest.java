@@ -0,0 +1,130 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.OtpCode;
+import com.exemple.testotp.exception.SmsException;
+import com.exemple.testotp.repository.OtpCodeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ReminderDispatcherTest {
+
+    private static final String PHONE = "+212600000000";
+
+    private final OtpCodeRepository otpCodeRepository = mock(OtpCodeRepository.class);
+    private final OtpStore otpStore = mock(OtpStore.class);
+    private final OtpService otpService = mock(OtpService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReminderDispatcher dispatcher = new ReminderDispatcher(otpCodeRepository, otpStore, otpService,
+            new TaskExecutorAdapter(Runnable::run), meterRegistry);
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(dispatcher, "smsReminderDelayMinutes", 5);
+        ReflectionTestUtils.setField(dispatcher, "pageSize", 2);
+    }
+
+    @Test
+    void reminderNoLongerDueIsSkipped() {
+        when(otpStore.claimReminder(eq(PHONE), any(), any(), any())).thenReturn(Optional.empty());
+
+        assertThat(dispatcher.dispatchReminder(PHONE)).isEqualTo(ReminderDispatcher.ReminderOutcome.SKIPPED);
+
+        verifyNoInteractions(otpService);
+    }
+
+    @Test
+    void claimedReminderIsSentAndStaysClaimed() {
+        OtpCode otp = otp(1L, null);
+        when(otpStore.claimReminder(eq(PHONE), any(), any(), any())).thenReturn(Optional.of(otp));
+
+        assertThat(dispatcher.dispatchReminder(PHONE)).isEqualTo(ReminderDispatcher.ReminderOutcome.SENT);
+
+        verify(otpService).sendReminderSms(otp);
+        verify(otpCodeRepository, never()).releaseSmsReminder(anyList(), any());
+        assertThat(meterRegistry.get("otp.reminder.sent").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedSendReleasesItsOwnClaim() {
+        OtpCode otp = otp(1L, null);
+        ArgumentCaptor<LocalDateTime> claimedAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        when(otpStore.claimReminder(eq(PHONE), any(), any(), claimedAt.capture()))
+                .thenReturn(Optional.of(otp));
+        doThrow(new SmsException("Twilio indisponible")).when(otpService).sendReminderSms(otp);
+
+        assertThat(dispatcher.dispatchReminder(PHONE)).isEqualTo(ReminderDispatcher.ReminderOutcome.FAILED);
+
+        verify(otpCodeRepository).releaseSmsReminder(List.of(1L), claimedAt.getValue());
+        assertThat(meterRegistry.get("otp.reminder.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void undeliveredWhatsappGetsTheFallbackSms() {
+        OtpCode otp = otp(1L, OtpCode.WhatsappStatus.FAILED);
+        when(otpStore.claimReminder(eq(PHONE), any(), any(), any())).thenReturn(Optional.of(otp));
+
+        assertThat(dispatcher.dispatchFallback(PHONE)).isEqualTo(ReminderDispatcher.ReminderOutcome.SENT);
+
+        verify(otpService).sendFallbackSms(otp);
+        verify(otpService, never()).sendReminderSms(any());
+    }
+
+    @Test
+    void catchUpPagesAfterTheHighestClaimedIdAndReleasesOnlyFailures() {
+        OtpCode first = otp(7L, null);
+        OtpCode failing = otp(3L, null);
+        ArgumentCaptor<LocalDateTime> claimedAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        when(otpStore.claimReminders(any(), any(), eq(0), eq(1), eq(0L), eq(2), claimedAt.capture()))
+                .thenReturn(List.of(first, failing));
+        when(otpStore.claimReminders(any(), any(), eq(0), eq(1), eq(7L), eq(2), any()))
+                .thenReturn(List.of());
+        doThrow(new SmsException("Twilio indisponible")).when(otpService).sendReminderSms(failing);
+
+        dispatcher.dispatchPendingReminders(0, 1);
+
+        verify(otpService).sendReminderSms(first);
+        verify(otpCodeRepository).releaseSmsReminder(List.of(3L), claimedAt.getAllValues().get(0));
+        verify(otpStore).claimReminders(any(), any(), eq(0), eq(1), eq(7L), eq(2), any());
+    }
+
+    @Test
+    void shortPageEndsTheCatchUp() {
+        when(otpStore.claimReminders(any(), any(), anyInt(), anyInt(), anyLong(), anyInt(), any()))
+                .thenReturn(List.of(otp(4L, null)));
+
+        dispatcher.dispatchPendingReminders(0, 1);
+
+        verify(otpStore).claimReminders(any(), any(), anyInt(), anyInt(), anyLong(), anyInt(), any());
+    }
+
+    private static OtpCode otp(Long id, OtpCode.WhatsappStatus whatsappStatus) {
+        OtpCode otp = new OtpCode();
+        otp.setId(id);
+        otp.setPhoneNumber(PHONE);
+        otp.setExpiresAt(LocalDateTime.now().plusMinutes(5));
+        otp.setWhatsappSentAt(LocalDateTime.now().minusMinutes(6));
+        otp.setWhatsappStatus(whatsappStatus);
+        return otp;
+    }
+}
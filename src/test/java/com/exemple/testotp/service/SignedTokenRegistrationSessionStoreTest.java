@@ -0,0 +1,107 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.RegistrationSession;
+import com.exemple.testotp.repository.RegistrationTokenCompletionRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class SignedTokenRegistrationSessionStoreTest {
+
+    private static final String SECRET = secret('a');
+    private static final String NEW_SECRET = secret('b');
+
+    private final RegistrationTokenCompletionRepository completionRepository =
+            mock(RegistrationTokenCompletionRepository.class);
+
+    @Test
+    void decodesAValidToken() {
+        SignedTokenRegistrationSessionStore store = store(SECRET, "");
+        String token = store.create(session(LocalDateTime.now().plusMinutes(10))).getSessionId();
+
+        assertThat(store.find(token)).hasValueSatisfying(session -> {
+            assertThat(session.getPhoneNumber()).isEqualTo("+212600000000");
+            assertThat(session.getEmail()).isEqualTo("jean.dupont@exemple.com");
+            assertThat(session.getState()).isEqualTo(RegistrationSession.State.STARTED);
+        });
+    }
+
+    @Test
+    void rejectsATamperedToken() {
+        SignedTokenRegistrationSessionStore store = store(SECRET, "");
+        String token = store.create(session(LocalDateTime.now().plusMinutes(10))).getSessionId();
+        int separator = token.indexOf('.');
+
+        assertThat(store.find(flip(token, separator / 2))).isEmpty();
+        assertThat(store.find(flip(token, token.length() - 2))).isEmpty();
+        assertThat(store.find(token.substring(0, separator))).isEmpty();
+        assertThat(store.find("pas-un-jeton")).isEmpty();
+    }
+
+    @Test
+    void rejectsATokenSignedWithAnotherKey() {
+        String token = store(SECRET, "").create(session(LocalDateTime.now().plusMinutes(10))).getSessionId();
+
+        assertThat(store(NEW_SECRET, "").find(token)).isEmpty();
+    }
+
+    @Test
+    void rejectsAnExpiredToken() {
+        SignedTokenRegistrationSessionStore store = store(SECRET, "");
+        LocalDateTime now = LocalDateTime.now();
+        String token = store.create(session(now.minusSeconds(5))).getSessionId();
+
+        assertThat(store.markOtpVerified(token, now)).isEmpty();
+
+        RegistrationSession verified = session(now.minusSeconds(5));
+        verified.setOtpVerified(true);
+        String verifiedToken = store.create(verified).getSessionId();
+
+        assertThat(store.claimCompletion(verifiedToken, now, now.minusMinutes(5))).isEmpty();
+        verify(completionRepository, never()).claim(anyString(), any(), any(), any());
+    }
+
+    @Test
+    void acceptsTokensSignedWithThePreviousKeyAfterRotation() {
+        String token = store(SECRET, "").create(session(LocalDateTime.now().plusMinutes(10))).getSessionId();
+        SignedTokenRegistrationSessionStore rotated = store(NEW_SECRET, SECRET);
+
+        assertThat(rotated.find(token)).isPresent();
+
+        // Les jetons réémis sont signés avec la nouvelle clé
+        String reissued = rotated.markOtpVerified(token, LocalDateTime.now()).orElseThrow().getSessionId();
+        assertThat(store(NEW_SECRET, "").find(reissued)).isPresent();
+        assertThat(store(SECRET, "").find(reissued)).isEmpty();
+    }
+
+    private SignedTokenRegistrationSessionStore store(String secret, String previousSecret) {
+        return new SignedTokenRegistrationSessionStore(completionRepository, secret, previousSecret);
+    }
+
+    private static RegistrationSession session(LocalDateTime expiresAt) {
+        RegistrationSession session = new RegistrationSession();
+        session.setFirstName("Jean");
+        session.setLastName("Dupont");
+        session.setEmail("jean.dupont@exemple.com");
+        session.setPhoneNumber("+212600000000");
+        session.setExpiresAt(expiresAt);
+        return session;
+    }
+
+    private static String flip(String token, int index) {
+        char replacement = token.charAt(index) == 'A' ? 'B' : 'A';
+        return token.substring(0, index) + replacement + token.substring(index + 1);
+    }
+
+    private static String secret(char fill) {
+        return Base64.getEncoder().encodeToString(String.valueOf(fill).repeat(32).getBytes());
+    }
+}
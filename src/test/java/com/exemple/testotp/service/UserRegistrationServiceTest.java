@@ -0,0 +1,93 @@
+package com.exemple.testotp.service;
+
+import com.exemple.testotp.entity.RegistrationSession;
+import com.exemple.testotp.exception.InvalidOtpException;
+import com.exemple.testotp.exception.OtpAttemptsExceededException;
+import com.exemple.testotp.mapper.UserMapper;
+import com.exemple.testotp.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Vérification de l'OTP d'une session : blocage par session et par numéro.
+ */
+class UserRegistrationServiceTest {
+
+    private static final String PHONE = "+212600000000";
+    private static final String CODE = "123456";
+
+    private final RegistrationSessionService sessionService = mock(RegistrationSessionService.class);
+    private final OtpService otpService = mock(OtpService.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final OtpAttemptLimiter otpAttemptLimiter =
+            new OtpAttemptLimiter(new SimpleMeterRegistry(), true, 3, 15, System::currentTimeMillis);
+    private final UserRegistrationService service = new UserRegistrationService(mock(UserRepository.class),
+            sessionService, otpService, mock(KeycloakService.class), mock(UserMapper.class), mock(PasswordEncoder.class),
+            mock(RegistrationMetrics.class), mock(UserExistenceIndex.class), mock(OtpSendRateLimiter.class),
+            transactionTemplate, mock(AsyncTaskExecutor.class), otpAttemptLimiter);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void runTransactionsInline() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, TransactionCallback.class).doInTransaction(null));
+    }
+
+    @Test
+    void correctCodeVerifiesTheSession() {
+        when(sessionService.markOtpVerified("session-1")).thenReturn(session("session-1"));
+
+        assertThat(service.verifyOtp("session-1", CODE).getNextStep()).isEqualTo("SET_PASSWORD");
+
+        verify(otpService).verifyOtp(PHONE, CODE);
+    }
+
+    @Test
+    void exhaustedAttemptsRevokeTheCode() {
+        when(sessionService.markOtpVerified("session-1")).thenReturn(session("session-1"));
+        doThrow(new InvalidOtpException("Code OTP incorrect")).when(otpService).verifyOtp(anyString(), anyString());
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> service.verifyOtp("session-1", "000000")).isInstanceOf(InvalidOtpException.class);
+        }
+
+        verify(otpService).revokeOtp(PHONE);
+        assertThatThrownBy(() -> service.verifyOtp("session-1", CODE)).isInstanceOf(OtpAttemptsExceededException.class);
+    }
+
+    @Test
+    void lockedPhoneIsRefusedForASessionWithoutFailures() {
+        for (int i = 0; i < 3; i++) {
+            otpAttemptLimiter.recordFailure("session-1", PHONE);
+        }
+        when(sessionService.markOtpVerified("session-2")).thenReturn(session("session-2"));
+
+        assertThatThrownBy(() -> service.verifyOtp("session-2", CODE)).isInstanceOf(OtpAttemptsExceededException.class);
+
+        // Le code n'est pas consommé ; la transition de la session est annulée avec la transaction
+        verify(otpService, never()).verifyOtp(anyString(), anyString());
+    }
+
+    private static RegistrationSession session(String sessionId) {
+        RegistrationSession session = new RegistrationSession();
+        session.setSessionId(sessionId);
+        session.setPhoneNumber(PHONE);
+        session.setEmail("jean.dupont@exemple.com");
+        return session;
+    }
+}